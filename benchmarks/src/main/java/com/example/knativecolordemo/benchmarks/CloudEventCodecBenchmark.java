@@ -0,0 +1,92 @@
+package com.example.knativecolordemo.benchmarks;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.message.MessageWriter;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.http.HttpMessageFactory;
+import io.cloudevents.jackson.JsonFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary-mode encoding as done by {@code EventPublisherService} and decoding as done by
+ * {@code CloudEventSinkController}, plus structured JSON decoding for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CloudEventCodecBenchmark {
+
+    @Param({"64", "4096"})
+    public int payloadBytes;
+
+    private CloudEvent event;
+    private Map<String, String> binaryHeaders;
+    private byte[] binaryBody;
+    private Map<String, String> structuredHeaders;
+    private byte[] structuredBody;
+
+    @Setup
+    public void setUp() {
+        event = CloudEventBuilder.v1()
+                .withId("bench-event")
+                .withType("com.example.color.change")
+                .withSource(URI.create("benchmark"))
+                .withSubject("bench")
+                .withTime(OffsetDateTime.now())
+                .withData("application/json", Payloads.colorJson(payloadBytes))
+                .build();
+
+        binaryHeaders = new LinkedHashMap<>();
+        MessageWriter writer = HttpMessageFactory.createWriter(binaryHeaders::put, body -> binaryBody = body);
+        writer.writeBinary(event);
+
+        structuredHeaders = Map.of("Content-Type", JsonFormat.CONTENT_TYPE);
+        structuredBody = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE).serialize(event);
+    }
+
+    @Benchmark
+    public void encodeBinary(Blackhole blackhole) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        MessageWriter writer = HttpMessageFactory.createWriter(headers::put, blackhole::consume);
+        writer.writeBinary(event);
+        blackhole.consume(headers);
+    }
+
+    @Benchmark
+    public CloudEvent decodeBinary() {
+        return HttpMessageFactory.createReader(putHeader -> binaryHeaders.forEach(putHeader), binaryBody).toEvent();
+    }
+
+    @Benchmark
+    public CloudEvent decodeStructured() {
+        return HttpMessageFactory.createReader(putHeader -> structuredHeaders.forEach(putHeader), structuredBody).toEvent();
+    }
+
+    @Benchmark
+    public String decodeBinaryAndCopyData() {
+        CloudEvent decoded = HttpMessageFactory.createReader(putHeader -> binaryHeaders.forEach(putHeader), binaryBody).toEvent();
+        return new String(decoded.getData().toBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.knativecolordemo.benchmarks;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.service.ColorPayloadReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color extraction from event payloads (streaming vs tree parse) and {@link ColorChange} JSON mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorPayloadBenchmark {
+
+    @Param({"64", "4096"})
+    public int payloadBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private byte[] payload;
+    private ColorChange colorChange;
+    private byte[] colorChangeJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = Payloads.colorJson(payloadBytes);
+        colorChange = new ColorChange(ColorChange.Color.BLUE, ZonedDateTime.now(), "cloudevent:benchmark");
+        colorChange.setId(42L);
+        colorChangeJson = objectMapper.writeValueAsBytes(colorChange);
+    }
+
+    @Benchmark
+    public ColorChange.Color extractColorStreaming() throws IOException {
+        return ColorPayloadReader.readColor(payload);
+    }
+
+    @Benchmark
+    public ColorChange.Color extractColorTree() throws IOException {
+        return ColorChange.Color.valueOf(objectMapper.readTree(payload).get("color").asText().toUpperCase());
+    }
+
+    @Benchmark
+    public byte[] serializeColorChange() throws IOException {
+        return objectMapper.writeValueAsBytes(colorChange);
+    }
+
+    @Benchmark
+    public ColorChange deserializeColorChange() throws IOException {
+        return objectMapper.readValue(colorChangeJson, ColorChange.class);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.knativecolordemo.benchmarks;
+
+import com.example.knativecolordemo.KnativeColorDemoApplication;
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.repository.ColorChangeRepository;
+import com.example.knativecolordemo.service.ColorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read throughput of {@code /api/colors/current} while colors are being set: the in-process snapshot
+ * ({@code snapshot}) against the {@code findLatest} query it replaced ({@code query}).
+ *
+ * In each group three threads read while one sets a color about once per millisecond, so the writer's own
+ * score only reflects that pause. Compare the reader scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CurrentColorBenchmark {
+
+    private static final int BATCH = 100;
+    private static final ColorChange.Color[] COLORS = ColorChange.Color.values();
+    private static final long WRITE_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private ColorChangeRepository colorChangeRepository;
+    private ColorService colorService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(KnativeColorDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:bench-current;DB_CLOSE_DELAY=-1",
+                        "outbox.dir=" + Files.createTempDirectory("bench-outbox"),
+                        // Keep the compactor from trimming the prefilled table
+                        "retention.interval=PT24H",
+                        "retention.color-changes.max-rows=0",
+                        "retention.color-changes.max-age=0s",
+                        "retention.color-changes.max-bytes=0")
+                .run();
+        colorChangeRepository = context.getBean(ColorChangeRepository.class);
+        colorService = context.getBean(ColorService.class);
+
+        ZonedDateTime start = ZonedDateTime.now().minusSeconds(tableSize);
+        for (int offset = 0; offset < tableSize; offset += BATCH) {
+            colorChangeRepository.saveAll(colorChanges(Math.min(BATCH, tableSize - offset), start.plusSeconds(offset)));
+        }
+        colorService.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(3)
+    public ColorChange readSnapshot() {
+        return colorService.getCurrentColor();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public ColorChange setColorDuringSnapshotReads() {
+        return setColor();
+    }
+
+    @Benchmark
+    @Group("query")
+    @GroupThreads(3)
+    public Optional<ColorChange> readQuery() {
+        return colorChangeRepository.findLatest();
+    }
+
+    @Benchmark
+    @Group("query")
+    @GroupThreads(1)
+    public ColorChange setColorDuringQueryReads() {
+        return setColor();
+    }
+
+    private ColorChange setColor() {
+        LockSupport.parkNanos(WRITE_PAUSE_NANOS);
+        return colorService.setColor(COLORS[ThreadLocalRandom.current().nextInt(COLORS.length)], "benchmark");
+    }
+
+    private static List<ColorChange> colorChanges(int count, ZonedDateTime start) {
+        List<ColorChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(new ColorChange(COLORS[i % COLORS.length], start.plusNanos(i * 1000L), "benchmark"));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.knativecolordemo.benchmarks;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.message.MessageWriter;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.http.HttpMessageFactory;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.protobuf.ProtobufFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Binary mode against structured JSON and structured protobuf, encoded as {@code EventPublisherService}
+ * does with {@code knative.broker.event-format} and decoded as the sinks do. Run with {@code -prof gc}
+ * for allocation per operation; the bytes each encoding puts on the wire are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventFormatBenchmark {
+
+    @Param({"binary", "json", "protobuf"})
+    public String encoding;
+
+    @Param({"64", "4096"})
+    public int payloadBytes;
+
+    private CloudEvent event;
+    private EventFormat format;
+    private Map<String, String> headers;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        event = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withType("com.example.color.change")
+                .withSource(URI.create("com.example.knativecolordemo"))
+                .withSubject("manual-color-change")
+                .withTime(OffsetDateTime.now())
+                .withData("application/json", Payloads.colorJson(payloadBytes))
+                .build();
+        switch (encoding) {
+            case "json" -> format = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+            case "protobuf" -> format = EventFormatProvider.getInstance().resolveFormat(ProtobufFormat.PROTO_CONTENT_TYPE);
+            default -> format = null;
+        }
+
+        headers = new LinkedHashMap<>();
+        write(headers, captured -> body = captured);
+
+        // Header lines count as "name: value\r\n"
+        long wireBytes = body.length;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            wireBytes += header.getKey().length() + header.getValue().getBytes(StandardCharsets.UTF_8).length + 4;
+        }
+        System.out.printf("%n%s, %d-byte payload: %d bytes on the wire (%d headers, %d body)%n",
+                encoding, payloadBytes, wireBytes, wireBytes - body.length, body.length);
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        Map<String, String> encodedHeaders = new LinkedHashMap<>();
+        write(encodedHeaders, blackhole::consume);
+        blackhole.consume(encodedHeaders);
+    }
+
+    @Benchmark
+    public CloudEvent decode() {
+        return HttpMessageFactory.createReader(putHeader -> headers.forEach(putHeader), body).toEvent();
+    }
+
+    @Benchmark
+    public String decodeAndCopyData() {
+        CloudEvent decoded = decode();
+        return new String(decoded.getData().toBytes(), StandardCharsets.UTF_8);
+    }
+
+    private void write(Map<String, String> target, Consumer<byte[]> bodyConsumer) {
+        MessageWriter writer = HttpMessageFactory.createWriter(target::put, bodyConsumer);
+        if (format != null) {
+            writer.writeStructured(event, format);
+        } else {
+            writer.writeBinary(event);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.knativecolordemo.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Color-change payloads of a given size, padded with an extra field the parsers have to skip.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static byte[] colorJson(int size) {
+        String head = "{\"color\":\"BLUE\",\"source\":\"benchmark\",\"padding\":\"";
+        String tail = "\"}";
+        int padding = Math.max(0, size - head.length() - tail.length());
+        return (head + "x".repeat(padding) + tail).getBytes(StandardCharsets.UTF_8);
+    }
+}
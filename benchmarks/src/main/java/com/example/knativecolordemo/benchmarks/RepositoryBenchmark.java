@@ -0,0 +1,150 @@
+package com.example.knativecolordemo.benchmarks;
+
+import com.example.knativecolordemo.KnativeColorDemoApplication;
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.repository.CloudEventRepository;
+import com.example.knativecolordemo.repository.ColorChangeRepository;
+import com.example.knativecolordemo.service.ColorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and query throughput of the JPA repositories against H2 at several table sizes.
+ *
+ * Runs the application context without the web server. Saves grow the table during measurement,
+ * which is small next to the prefilled size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private CloudEventRepository cloudEventRepository;
+    private ColorChangeRepository colorChangeRepository;
+    private ColorService colorService;
+    private TransactionTemplate transactionTemplate;
+    private CloudEventRecord middle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(KnativeColorDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "outbox.dir=" + Files.createTempDirectory("bench-outbox"),
+                        // Keep the compactor from trimming the prefilled tables
+                        "retention.interval=PT24H",
+                        "retention.cloud-events.max-rows=0",
+                        "retention.cloud-events.max-age=0s",
+                        "retention.cloud-events.max-bytes=0",
+                        "retention.color-changes.max-rows=0",
+                        "retention.color-changes.max-age=0s",
+                        "retention.color-changes.max-bytes=0")
+                .run();
+        cloudEventRepository = context.getBean(CloudEventRepository.class);
+        colorChangeRepository = context.getBean(ColorChangeRepository.class);
+        colorService = context.getBean(ColorService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        ZonedDateTime start = ZonedDateTime.now().minusSeconds(tableSize);
+        for (int offset = 0; offset < tableSize; offset += BATCH) {
+            int count = Math.min(BATCH, tableSize - offset);
+            ZonedDateTime batchStart = start.plusSeconds(offset);
+            transactionTemplate.executeWithoutResult(status -> {
+                cloudEventRepository.saveAll(cloudEvents(count, batchStart));
+                colorChangeRepository.saveAll(colorChanges(count, batchStart));
+            });
+        }
+        colorService.reload();
+        middle = cloudEventRepository.findNewest(PageRequest.of(0, tableSize / 2)).get(tableSize / 2 - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void saveCloudEventBatch() {
+        transactionTemplate.executeWithoutResult(status ->
+                cloudEventRepository.saveAll(cloudEvents(BATCH, ZonedDateTime.now())));
+    }
+
+    @Benchmark
+    public List<CloudEventRecord> findNewestEvents() {
+        return cloudEventRepository.findNewest(PageRequest.of(0, 50));
+    }
+
+    @Benchmark
+    public List<CloudEventRecord> findEventsBeforeMiddle() {
+        return cloudEventRepository.findBefore(middle.getTimestamp(), middle.getId(), PageRequest.of(0, 50));
+    }
+
+    @Benchmark
+    public Optional<ColorChange> findLatestColor() {
+        return colorChangeRepository.findLatest();
+    }
+
+    @Benchmark
+    public ColorChange currentColorSnapshot() {
+        return colorService.getCurrentColor();
+    }
+
+    private static List<CloudEventRecord> cloudEvents(int count, ZonedDateTime start) {
+        List<CloudEventRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new CloudEventRecord(UUID.randomUUID().toString(), "com.example.color.change", "benchmark",
+                    start.plusNanos(i * 1000L), "{\"color\":\"BLUE\"}", "bench"));
+        }
+        return records;
+    }
+
+    private static List<ColorChange> colorChanges(int count, ZonedDateTime start) {
+        List<ColorChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(new ColorChange(ColorChange.Color.values()[i % ColorChange.Color.values().length],
+                    start.plusNanos(i * 1000L), "benchmark"));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.knativecolordemo.benchmarks;
+
+import com.example.knativecolordemo.KnativeColorDemoApplication;
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.service.SnapshotFormat;
+import com.example.knativecolordemo.service.SnapshotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a warm-start snapshot into empty tables, and to export it again.
+ *
+ * Each load starts from truncated tables, so every measurement is a full cold load of {@code events}
+ * CloudEvents plus one color change per ten events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotBenchmark {
+
+    @Param({"1000000"})
+    public int events;
+
+    private ConfigurableApplicationContext context;
+    private SnapshotService snapshotService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(KnativeColorDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:bench-snapshot;DB_CLOSE_DELAY=-1",
+                        "outbox.dir=" + Files.createTempDirectory("bench-outbox"),
+                        // Keep the compactor from trimming the loaded tables
+                        "retention.interval=PT24H",
+                        "retention.cloud-events.max-rows=0",
+                        "retention.cloud-events.max-age=0s",
+                        "retention.cloud-events.max-bytes=0",
+                        "retention.color-changes.max-rows=0",
+                        "retention.color-changes.max-age=0s",
+                        "retention.color-changes.max-bytes=0")
+                .run();
+        snapshotService = context.getBean(SnapshotService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        snapshot = buildSnapshot(events);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE cloud_events");
+        jdbcTemplate.execute("TRUNCATE TABLE color_changes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SnapshotService.Result load() throws IOException {
+        return snapshotService.load(new ByteArrayInputStream(snapshot));
+    }
+
+    @Benchmark
+    public SnapshotService.Result loadThenExport() throws IOException {
+        snapshotService.load(new ByteArrayInputStream(snapshot));
+        return snapshotService.export(OutputStream.nullOutputStream());
+    }
+
+    private static byte[] buildSnapshot(int events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotFormat.Writer writer = new SnapshotFormat.Writer(bytes);
+        OffsetDateTime start = OffsetDateTime.now().minusSeconds(events);
+        ColorChange.Color[] colors = ColorChange.Color.values();
+        String data = new String(Payloads.colorJson(64), StandardCharsets.UTF_8);
+
+        writer.beginColorChanges();
+        for (int i = 0; i < events / 10; i++) {
+            writer.writeColorChange(i + 1, colors[i % colors.length], start.plusSeconds(i * 10L), "benchmark");
+        }
+
+        writer.beginCloudEvents();
+        for (int i = 0; i < events; i++) {
+            CloudEventRecord record = new CloudEventRecord(UUID.randomUUID().toString(), "com.example.color.change",
+                    "benchmark", start.plusSeconds(i).toZonedDateTime(), data, "bench");
+            record.setId(i + 1L);
+            writer.writeCloudEvent(record);
+        }
+        writer.finish();
+        return bytes.toByteArray();
+    }
+}
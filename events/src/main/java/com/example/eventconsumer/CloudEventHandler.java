@@ -0,0 +1,17 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.CloudEvent;
+
+/**
+ * Handles consumed CloudEvents whose type matches {@link #getTypePattern()}.
+ *
+ * A pattern is an exact type ({@code com.example.user.created}), a prefix ending in {@code *}
+ * ({@code com.example.order.*}) or {@code *} for every type. The most specific match wins. Each handler
+ * runs on its own bounded executor, see {@link CloudEventHandlerRegistry}.
+ */
+public interface CloudEventHandler {
+
+    String getTypePattern();
+
+    void handle(CloudEvent event) throws Exception;
+}
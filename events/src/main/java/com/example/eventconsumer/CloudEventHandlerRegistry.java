@@ -0,0 +1,165 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.CloudEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes consumed CloudEvents to {@link CloudEventHandler} beans by type.
+ *
+ * Every handler gets its own executor with {@code events.handlers.threads} threads and a queue of
+ * {@code events.handlers.queue-capacity} events, so a slow handler backs up only its own queue.
+ * Lookups need just the type, which lets the endpoint reject unknown types before decoding the body.
+ *
+ * The endpoint acknowledges an event once it is queued, so a failing handler is not redelivered by the broker.
+ * Instead a handler run is retried up to {@code events.handlers.max-attempts} times, {@code retry-backoff} apart,
+ * on the handler's own thread; after the last attempt the event is logged and counted in
+ * {@code cloudevents.handler.failures}.
+ */
+@Component
+public class CloudEventHandlerRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudEventHandlerRegistry.class);
+
+    private final Map<String, Bulkhead> exact = new HashMap<>();
+    // Longest prefix first; "*" is the empty prefix and matches last
+    private final List<Map.Entry<String, Bulkhead>> prefixes = new ArrayList<>();
+    private final List<Bulkhead> bulkheads = new ArrayList<>();
+
+    private final CloudEventMetrics cloudEventMetrics;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+
+    @Autowired
+    public CloudEventHandlerRegistry(List<CloudEventHandler> handlers,
+                                     @Value("${events.handlers.threads:2}") int threads,
+                                     @Value("${events.handlers.queue-capacity:100}") int queueCapacity,
+                                     @Value("${events.handlers.max-attempts:3}") int maxAttempts,
+                                     @Value("${events.handlers.retry-backoff:PT0.2S}") Duration retryBackoff,
+                                     CloudEventMetrics cloudEventMetrics) {
+        this.cloudEventMetrics = cloudEventMetrics;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoff.toMillis();
+        Map<String, Bulkhead> byPrefix = new HashMap<>();
+        for (CloudEventHandler handler : handlers) {
+            String pattern = handler.getTypePattern();
+            int wildcard = pattern.indexOf('*');
+            if (wildcard >= 0 && wildcard != pattern.length() - 1) {
+                throw new IllegalArgumentException("Handler type pattern may only end in '*': " + pattern);
+            }
+            Map<String, Bulkhead> target = wildcard < 0 ? exact : byPrefix;
+            String key = wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+            if (target.containsKey(key)) {
+                throw new IllegalArgumentException("Duplicate handlers for type pattern " + pattern);
+            }
+            Bulkhead bulkhead = new Bulkhead(handler, threads, queueCapacity);
+            target.put(key, bulkhead);
+            bulkheads.add(bulkhead);
+            logger.info("Registered {} for {}", handler.getClass().getSimpleName(), pattern);
+        }
+        prefixes.addAll(byPrefix.entrySet());
+        prefixes.sort(Comparator.comparingInt((Map.Entry<String, Bulkhead> e) -> e.getKey().length()).reversed());
+    }
+
+    /**
+     * Whether any handler accepts the type.
+     */
+    public boolean supports(String type) {
+        return resolve(type).isPresent();
+    }
+
+    /**
+     * Queues the event on its handler's executor.
+     *
+     * @throws IllegalArgumentException if no handler accepts the event type
+     * @throws RejectedExecutionException if that handler's queue is full
+     */
+    public void dispatch(CloudEvent event) {
+        Bulkhead bulkhead = resolve(event.getType())
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported event type: " + event.getType()));
+        bulkhead.executor.execute(() -> handle(bulkhead.handler, event));
+    }
+
+    private void handle(CloudEventHandler handler, CloudEvent event) {
+        String name = handler.getClass().getSimpleName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.handle(event);
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("Handler {} failed on event {} after {} attempts, dropping it", name, event.getId(), attempt, e);
+                    cloudEventMetrics.recordHandlerFailure(name, event.getType());
+                    return;
+                }
+                logger.warn("Handler {} failed on event {} (attempt {} of {}): {}", name, event.getId(), attempt,
+                        maxAttempts, e.getMessage());
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(retryBackoffMillis * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while retrying handler {} on event {}, dropping it", name, event.getId());
+                cloudEventMetrics.recordHandlerFailure(name, event.getType());
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        bulkheads.forEach(bulkhead -> bulkhead.executor.shutdown());
+        for (Bulkhead bulkhead : bulkheads) {
+            bulkhead.executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private Optional<Bulkhead> resolve(String type) {
+        Bulkhead bulkhead = exact.get(type);
+        if (bulkhead != null) {
+            return Optional.of(bulkhead);
+        }
+        return prefixes.stream().filter(e -> type.startsWith(e.getKey())).map(Map.Entry::getValue).findFirst();
+    }
+
+    private static final class Bulkhead {
+
+        private final CloudEventHandler handler;
+        private final ThreadPoolExecutor executor;
+
+        Bulkhead(CloudEventHandler handler, int threads, int queueCapacity) {
+            this.handler = handler;
+            // AbortPolicy: a full queue rejects instead of running the handler on the request thread
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory(handler.getTypePattern()),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        private static ThreadFactory threadFactory(String pattern) {
+            AtomicInteger count = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "handler-" + pattern + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.eventconsumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for published and consumed CloudEvents, tagged by event type and source.
+ *
+ * Timers are cached per tag combination. Each tag keeps at most {@code metrics.cloudevents.max-tag-values}
+ * distinct values; later ones are reported as {@code other}.
+ *
+ * Kept in step with {@code CloudEventMetrics} in the color service: the publish timer, the tag cap and its
+ * property are the same, so dashboards can query both apps alike.
+ */
+@Component
+public class CloudEventMetrics {
+
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxTagValues;
+
+    private final Set<String> types = ConcurrentHashMap.newKeySet();
+    private final Set<String> sources = ConcurrentHashMap.newKeySet();
+
+    private final Map<Key, Timer> publishTimers = new ConcurrentHashMap<>();
+    private final Map<Key, Timer> lagTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CloudEventMetrics(MeterRegistry meterRegistry,
+                             @Value("${metrics.cloudevents.max-tag-values:100}") int maxTagValues) {
+        this.meterRegistry = meterRegistry;
+        this.maxTagValues = maxTagValues;
+    }
+
+    /**
+     * Records a broker round trip; {@code status} is the HTTP status code, {@code error} or {@code rejected}.
+     */
+    public void recordPublish(String type, String source, String status, long startNanos) {
+        publishTimers.computeIfAbsent(key(type, source, status), key -> timer("broker.publish.latency",
+                "Broker round trip for published CloudEvents", key, Duration.ofSeconds(30)))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records how long ago the sender stamped a consumed event; events without a time are skipped.
+     */
+    public void recordLag(String type, String source, OffsetDateTime eventTime) {
+        if (eventTime == null) {
+            return;
+        }
+        long lagMillis = Math.max(0, System.currentTimeMillis() - eventTime.toInstant().toEpochMilli());
+        lagTimers.computeIfAbsent(key(type, source, null), key -> timer("cloudevents.consume.lag",
+                "Time from the CloudEvent time attribute to receipt by the consumer", key, Duration.ofMinutes(5)))
+                .record(lagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts an event whose handler still failed after its last attempt; it is not redelivered.
+     */
+    public void recordHandlerFailure(String handler, String type) {
+        Counter.builder("cloudevents.handler.failures")
+                .description("Consumed CloudEvents dropped after their handler failed every attempt")
+                .tag("handler", handler)
+                .tag("type", bounded(types, type))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer timer(String name, String description, Key key, Duration max) {
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .tag("type", key.type())
+                .tag("source", key.source())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(max);
+        if (key.status() != null) {
+            builder.tag("status", key.status());
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private Key key(String type, String source, String status) {
+        return new Key(bounded(types, type), bounded(sources, source), status);
+    }
+
+    private String bounded(Set<String> seen, String value) {
+        if (value == null) {
+            return OTHER;
+        }
+        if (seen.contains(value)) {
+            return value;
+        }
+        if (seen.size() < maxTagValues) {
+            seen.add(value);
+            return value;
+        }
+        return OTHER;
+    }
+
+    private record Key(String type, String source, String status) {
+    }
+}
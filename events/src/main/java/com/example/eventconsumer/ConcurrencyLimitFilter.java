@@ -0,0 +1,67 @@
+package com.example.eventconsumer;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of requests executing at once; a limit of 0 disables it.
+ *
+ * Set {@code concurrency.limit} to the {@code autoscaling.knative.dev/target} of the service: with virtual
+ * threads there is no thread pool left to bound how many trigger and bulk requests publish at once.
+ * A request waits up to {@code concurrency.acquire-timeout} for a slot and is then answered with 503.
+ * Actuator requests are never limited.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final int limit;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+
+    public ConcurrencyLimitFilter(@Value("${concurrency.limit:0}") int limit,
+                                  @Value("${concurrency.acquire-timeout:PT0.5S}") Duration acquireTimeout) {
+        this.limit = limit;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.permits = new Semaphore(Math.max(limit, 0));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return limit <= 0 || path.startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Concurrency limit of " + limit + " reached");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -3,76 +3,66 @@ package com.example.eventconsumer;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.message.MessageReader;
 import io.cloudevents.http.HttpMessageFactory;
-import io.cloudevents.jackson.JsonFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class EventConsumerController {
 
     private static final Logger logger = LoggerFactory.getLogger(EventConsumerController.class);
 
+    @Autowired
+    private CloudEventHandlerRegistry handlerRegistry;
+
+    @Autowired
+    private CloudEventMetrics cloudEventMetrics;
+
     @PostMapping("/")
     public ResponseEntity<String> receiveEvent(
             @RequestHeader HttpHeaders headers,
-            @RequestBody(required = false) String body) {
+            @RequestBody(required = false) byte[] body) {
+
+        // Binary mode carries the type in a header, so unknown types are turned away without decoding the body
+        String type = headers.getFirst("ce-type");
+        if (type != null && !handlerRegistry.supports(type)) {
+            logger.debug("Rejecting unsupported event type: {}", type);
+            return ResponseEntity.badRequest().body("Unsupported event type: " + type);
+        }
 
+        CloudEvent event;
         try {
-            // Parse the CloudEvent from HTTP request
+            // Parse the CloudEvent from HTTP request; structured JSON and protobuf are told apart by content type
             MessageReader messageReader = HttpMessageFactory.createReader(
                 headers.toSingleValueMap(),
-                body != null ? body.getBytes() : new byte[0]
+                body != null ? body : new byte[0]
             );
-
-            CloudEvent event = messageReader.toEvent();
-
-            // Process the event
-            logger.info("Received CloudEvent:");
-            logger.info("  ID: {}", event.getId());
-            logger.info("  Type: {}", event.getType());
-            logger.info("  Source: {}", event.getSource());
-            logger.info("  Subject: {}", event.getSubject());
-            logger.info("  Data: {}", new String(event.getData().toBytes()));
-
-            // Your business logic here
-            processEvent(event);
-
-            return ResponseEntity.accepted().build();
-
-        } catch (Exception e) {
-            logger.error("Error processing event", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                 .body("Error processing event: " + e.getMessage());
+            event = messageReader.toEvent();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to decode CloudEvent: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid CloudEvent: " + e.getMessage());
         }
-    }
+        logger.debug("Received CloudEvent {} ({}) from {}", event.getId(), event.getType(), event.getSource());
+        cloudEventMetrics.recordLag(event.getType(), event.getSource().toString(), event.getTime());
 
-    private void processEvent(CloudEvent event) {
-        // Implement your event processing logic here
-        switch (event.getType()) {
-            case "com.example.user.created":
-                handleUserCreated(event);
-                break;
-            case "com.example.order.placed":
-                handleOrderPlaced(event);
-                break;
-            default:
-                logger.warn("Unknown event type: {}", event.getType());
+        try {
+            handlerRegistry.dispatch(event);
+        } catch (IllegalArgumentException e) {
+            // Structured mode: the type is only known once the body is decoded
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Handler queue full for {}, asking the broker to back off", event.getType());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                 .header(HttpHeaders.RETRY_AFTER, "1")
+                                 .body("Handler queue for " + event.getType() + " is full");
         }
-    }
-
-    private void handleUserCreated(CloudEvent event) {
-        logger.info("Processing user created event: {}", event.getId());
-        // Add your user creation handling logic
-    }
 
-    private void handleOrderPlaced(CloudEvent event) {
-        logger.info("Processing order placed event: {}", event.getId());
-        // Add your order processing logic
+        return ResponseEntity.accepted().build();
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,33 @@
 package com.example.eventconsumer;
 
 import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.core.message.MessageWriter;
 import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.provider.EventFormatProvider;
 import io.cloudevents.http.HttpMessageFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
-import java.net.HttpURLConnection;
+import jakarta.annotation.PostConstruct;
+
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class EventPublisherService {
@@ -28,21 +37,83 @@ public class EventPublisherService {
     @Value("${knative.broker.url:http://broker-ingress.knative-eventing.svc.cluster.local/my-app-namespace/default}")
     private String brokerUrl;
 
+    @Value("${knative.broker.http-version:HTTP_1_1}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${knative.broker.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${knative.broker.request-timeout:PT5S}")
+    private Duration requestTimeout;
+
+    @Value("${knative.broker.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${knative.broker.acquire-timeout:PT0S}")
+    private Duration acquireTimeout;
+
+    // Empty for binary content mode, else a structured format such as application/cloudevents+protobuf
+    @Value("${knative.broker.event-format:}")
+    private String eventFormatType;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private CloudEventMetrics cloudEventMetrics;
+
     private final ObjectMapper objectMapper;
 
+    private URI brokerUri;
+
+    private EventFormat eventFormat;
+
+    // Shared client: keeps connections to broker-ingress alive and multiplexes them over HTTP/2 when offered
+    private HttpClient httpClient;
+
+    private Semaphore inFlight;
+
     public EventPublisherService() {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
     }
 
-    public void publishUserCreatedEvent(String userId, String userEmail) {
+    @PostConstruct
+    public void init() {
+        brokerUri = URI.create(brokerUrl);
+        if (!eventFormatType.isBlank()) {
+            eventFormat = EventFormatProvider.getInstance().resolveFormat(eventFormatType);
+            if (eventFormat == null) {
+                throw new IllegalStateException("Unsupported knative.broker.event-format: " + eventFormatType);
+            }
+        }
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout);
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            // Run response handling and dependent stages on virtual threads rather than the client's cached pool
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("broker-client-");
+            executor.setVirtualThreads(true);
+            builder.executor(executor);
+        }
+        httpClient = builder.build();
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    public CompletableFuture<Void> publishUserCreatedEvent(String userId, String userEmail) {
+        return publishUserCreatedEvent(userId, userEmail, false);
+    }
+
+    /**
+     * @param awaitCapacity block until an in-flight slot frees up instead of failing after knative.broker.acquire-timeout
+     */
+    public CompletableFuture<Void> publishUserCreatedEvent(String userId, String userEmail, boolean awaitCapacity) {
         try {
             // Create event data
             UserCreatedData eventData = new UserCreatedData(userId, userEmail);
 
             // Serialize event data to JSON
-            String eventDataJson = objectMapper.writeValueAsString(eventData);
-            byte[] eventDataBytes = eventDataJson.getBytes();
+            byte[] eventDataBytes = objectMapper.writeValueAsBytes(eventData);
 
             // Build CloudEvent
             CloudEvent event = CloudEventBuilder.v1()
@@ -54,21 +125,34 @@ public class EventPublisherService {
                     .build();
 
             // Publish event
-            publishEvent(event);
+            return publishEvent(event, awaitCapacity).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    // The caller gets the failure; one line is enough here
+                    logger.warn("Failed to publish user created event {}: {}", event.getId(),
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            });
 
         } catch (Exception e) {
             logger.error("Error publishing user created event", e);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    public void publishOrderPlacedEvent(String orderId, String customerId, double amount) {
+    public CompletableFuture<Void> publishOrderPlacedEvent(String orderId, String customerId, double amount) {
+        return publishOrderPlacedEvent(orderId, customerId, amount, false);
+    }
+
+    /**
+     * @param awaitCapacity block until an in-flight slot frees up instead of failing after knative.broker.acquire-timeout
+     */
+    public CompletableFuture<Void> publishOrderPlacedEvent(String orderId, String customerId, double amount, boolean awaitCapacity) {
         try {
             // Create event data
             OrderPlacedData eventData = new OrderPlacedData(orderId, customerId, amount);
 
             // Serialize event data to JSON
-            String eventDataJson = objectMapper.writeValueAsString(eventData);
-            byte[] eventDataBytes = eventDataJson.getBytes();
+            byte[] eventDataBytes = objectMapper.writeValueAsBytes(eventData);
 
             // Build CloudEvent
             CloudEvent event = CloudEventBuilder.v1()
@@ -80,68 +164,89 @@ public class EventPublisherService {
                     .build();
 
             // Publish event
-            publishEvent(event);
+            return publishEvent(event, awaitCapacity).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    // The caller gets the failure; one line is enough here
+                    logger.warn("Failed to publish order placed event {}: {}", event.getId(),
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            });
 
         } catch (Exception e) {
             logger.error("Error publishing order placed event", e);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    private void publishEvent(CloudEvent event) {
-        try {
-            URL url = URI.create(brokerUrl).toURL();
-            HttpURLConnection httpUrlConnection = (HttpURLConnection) url.openConnection();
-            httpUrlConnection.setRequestMethod("POST");
-            httpUrlConnection.setDoOutput(true);
-            httpUrlConnection.setDoInput(true);
-
-            logger.info("Sending message to broker {}", brokerUrl);
-
-            // Use CloudEvents HTTP message factory to write the event
-            MessageWriter messageWriter = createMessageWriter(httpUrlConnection);
-            messageWriter.writeBinary(event);
+    /**
+     * Sends the event to the broker in binary content mode, or structured in {@code knative.broker.event-format} when set.
+     * While all in-flight slots are taken the calling thread blocks for up to {@code knative.broker.acquire-timeout},
+     * which defaults to zero so request threads fail fast.
+     *
+     * @return a future completed once the broker acknowledged the event with a 2xx response
+     */
+    public CompletableFuture<Void> publishEvent(CloudEvent event) {
+        return publishEvent(event, false);
+    }
 
-            // Actually send the request and get the response
-            int responseCode = httpUrlConnection.getResponseCode();
-            logger.info("Broker response code: {}", responseCode);
-
-            if (responseCode >= 200 && responseCode < 300) {
-                logger.info("Successfully published event: {} ({})", event.getId(), event.getType());
-            } else {
-                // Read error response
-                String errorResponse = "";
-                try {
-                    errorResponse = new String(httpUrlConnection.getErrorStream().readAllBytes());
-                } catch (Exception e) {
-                    // Ignore error reading error stream
-                }
-                logger.error("Failed to publish event. Response code: {}, Error: {}", responseCode, errorResponse);
-                throw new RuntimeException("Failed to publish event. Response code: " + responseCode);
+    /**
+     * @param awaitCapacity block until an in-flight slot frees up; bulk publishing uses this for backpressure
+     */
+    public CompletableFuture<Void> publishEvent(CloudEvent event, boolean awaitCapacity) {
+        long start = System.nanoTime();
+        String source = event.getSource().toString();
+        try {
+            if (awaitCapacity) {
+                inFlight.acquire();
+            } else if (!inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                cloudEventMetrics.recordPublish(event.getType(), source, "rejected", start);
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Too many in-flight broker requests (" + maxInFlight + ")"));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
 
-        } catch (Exception e) {
-            logger.error("Error publishing event to broker", e);
-            throw new RuntimeException("Failed to publish event", e);
+        try {
+            HttpRequest request = createRequest(event);
+            logger.debug("Sending message to broker {}", brokerUrl);
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, e) -> {
+                        inFlight.release();
+                        cloudEventMetrics.recordPublish(event.getType(), source,
+                                response != null ? Integer.toString(response.statusCode()) : "error", start);
+                    })
+                    .thenAccept(response -> {
+                        int responseCode = response.statusCode();
+                        logger.debug("Broker response code: {}", responseCode);
+                        if (responseCode < 200 || responseCode >= 300) {
+                            logger.error("Failed to publish event. Response code: {}, Error: {}", responseCode, response.body());
+                            throw new IllegalStateException("Failed to publish event. Response code: " + responseCode);
+                        }
+                        logger.info("Successfully published event: {} ({})", event.getId(), event.getType());
+                    });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            cloudEventMetrics.recordPublish(event.getType(), source, "error", start);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    private static MessageWriter createMessageWriter(HttpURLConnection httpUrlConnection) {
-        return HttpMessageFactory.createWriter(
-            httpUrlConnection::setRequestProperty,
-            body -> {
-                try {
-                    if (body != null) {
-                        httpUrlConnection.setRequestProperty("content-length", String.valueOf(body.length));
-                        try (OutputStream outputStream = httpUrlConnection.getOutputStream()) {
-                            outputStream.write(body);
-                        }
-                    } else {
-                        httpUrlConnection.setRequestProperty("content-length", "0");
-                    }
-                } catch (IOException t) {
-                    throw new UncheckedIOException(t);
-                }
-            });
+    private HttpRequest createRequest(CloudEvent event) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(brokerUri).timeout(requestTimeout);
+        MessageWriter messageWriter = HttpMessageFactory.createWriter(
+            builder::header,
+            body -> builder.POST(body != null
+                ? HttpRequest.BodyPublishers.ofByteArray(body)
+                : HttpRequest.BodyPublishers.noBody()));
+        if (eventFormat != null) {
+            messageWriter.writeStructured(event, eventFormat);
+        } else {
+            messageWriter.writeBinary(event);
+        }
+        return builder.build();
     }
 
     // Event data classes
@@ -1,9 +1,14 @@
 package com.example.eventconsumer;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api")
 public class EventTriggerController {
@@ -11,6 +16,9 @@ public class EventTriggerController {
     @Autowired
     private EventPublisherService eventPublisherService;
 
+    @Autowired
+    private NdjsonBulkPublisher bulkPublisher;
+
     @PostMapping("/users")
     public ResponseEntity<String> createUser(@RequestBody CreateUserRequest request) {
         // Simulate user creation logic
@@ -33,6 +41,31 @@ public class EventTriggerController {
         return ResponseEntity.ok("Order placed with ID: " + orderId);
     }
 
+    // Bulk variants: one JSON request per line in, one JSON result per line out
+    @PostMapping(path = "/users/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        String batchId = String.valueOf(System.currentTimeMillis());
+        bulkPublisher.publish(request.getInputStream(), response.getOutputStream(), CreateUserRequest.class,
+            (user, line) -> {
+                String userId = "user-" + batchId + "-" + line;
+                return new NdjsonBulkPublisher.BulkItem(line, userId,
+                    eventPublisherService.publishUserCreatedEvent(userId, user.getEmail(), true));
+            });
+    }
+
+    @PostMapping(path = "/orders/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void placeOrders(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        String batchId = String.valueOf(System.currentTimeMillis());
+        bulkPublisher.publish(request.getInputStream(), response.getOutputStream(), CreateOrderRequest.class,
+            (order, line) -> {
+                String orderId = "order-" + batchId + "-" + line;
+                return new NdjsonBulkPublisher.BulkItem(line, orderId,
+                    eventPublisherService.publishOrderPlacedEvent(orderId, order.getCustomerId(), order.getAmount(), true));
+            });
+    }
+
     public static class CreateUserRequest {
         private String email;
 
@@ -0,0 +1,28 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.protobuf.ProtobufFormat;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and resource hints for the native image that Spring's AOT processing cannot infer:
+ * event data and bulk results serialized by hand-built ObjectMappers, and the CloudEvents JSON
+ * and protobuf formats loaded through {@link java.util.ServiceLoader}.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                EventPublisherService.UserCreatedData.class, EventPublisherService.OrderPlacedData.class,
+                EventTriggerController.CreateUserRequest.class, EventTriggerController.CreateOrderRequest.class,
+                NdjsonBulkPublisher.BulkResult.class);
+
+        hints.resources().registerPattern("META-INF/services/io.cloudevents.core.format.EventFormat");
+        hints.reflection().registerType(JsonFormat.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        hints.reflection().registerType(ProtobufFormat.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.eventconsumer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+
+/**
+ * Streams newline-delimited JSON requests into CloudEvent publishes and writes one result line per item.
+ *
+ * Lines are parsed one at a time and at most {@code events.bulk.window} publishes are outstanding,
+ * so memory stays flat regardless of payload size. A line is buffered only up to {@code events.bulk.max-line-chars};
+ * a longer one fails as its own item and the rest of it is skipped. Results are written in input order. Publishes
+ * wait for a free broker slot rather than failing, so concurrent bulk requests slow each other down instead of erroring.
+ */
+@Component
+public class NdjsonBulkPublisher {
+
+    private static final int FLUSH_EVERY = 100;
+
+    private static final int LINE = 0;
+    private static final int OVERSIZED = 1;
+    private static final int EOF = -1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${events.bulk.window:64}")
+    private int window;
+
+    @Value("${events.bulk.max-line-chars:1048576}")
+    private int maxLineChars;
+
+    @PostConstruct
+    public void validate() {
+        if (window < 1) {
+            throw new IllegalStateException("events.bulk.window must be at least 1, was " + window);
+        }
+        if (maxLineChars < 1) {
+            throw new IllegalStateException("events.bulk.max-line-chars must be at least 1, was " + maxLineChars);
+        }
+    }
+
+    /**
+     * @param publisher starts the publish for one parsed item and its 1-based line number; it should wait for
+     *                  broker capacity rather than fail fast
+     */
+    public <T> void publish(InputStream input, OutputStream output, Class<T> type,
+                            BiFunction<T, Long, BulkItem> publisher) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(type);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Writer results = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        Deque<BulkItem> pending = new ArrayDeque<>(window);
+
+        long lineNumber = 0;
+        long written = 0;
+        StringBuilder line = new StringBuilder();
+        int end;
+        while ((end = readLine(lines, line)) != EOF) {
+            lineNumber++;
+            BulkItem item;
+            if (end == OVERSIZED) {
+                item = new BulkItem(lineNumber, null, CompletableFuture.failedFuture(
+                        new IOException("Line exceeds " + maxLineChars + " characters")));
+            } else if (line.toString().isBlank()) {
+                continue;
+            } else {
+                try {
+                    item = publisher.apply(reader.readValue(line.toString()), lineNumber);
+                } catch (IOException | RuntimeException e) {
+                    item = new BulkItem(lineNumber, null, CompletableFuture.failedFuture(e));
+                }
+            }
+            pending.addLast(item);
+
+            // Keep a bounded window of concurrent publishes; the oldest result is written first
+            while (pending.size() >= window) {
+                writeResult(results, pending.pollFirst());
+                if (++written % FLUSH_EVERY == 0) {
+                    results.flush();
+                }
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            writeResult(results, pending.pollFirst());
+        }
+        results.flush();
+    }
+
+    /**
+     * Reads the next \n or \r\n terminated line into {@code line}, keeping at most maxLineChars characters;
+     * past that the rest of the line is read and discarded.
+     *
+     * @return {@link #LINE}, {@link #OVERSIZED}, or {@link #EOF} when no characters were left
+     */
+    private int readLine(BufferedReader lines, StringBuilder line) throws IOException {
+        line.setLength(0);
+        boolean oversized = false;
+        boolean any = false;
+        int c;
+        while ((c = lines.read()) != -1) {
+            any = true;
+            if (c == '\n') {
+                break;
+            }
+            if (oversized) {
+                continue;
+            }
+            // One more character is allowed for the \r of a \r\n ending
+            if (line.length() >= maxLineChars && !(c == '\r' && line.length() == maxLineChars)) {
+                oversized = true;
+                line.setLength(0);
+                continue;
+            }
+            line.append((char) c);
+        }
+        if (!any) {
+            return EOF;
+        }
+        if (oversized) {
+            return OVERSIZED;
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        return line.length() > maxLineChars ? OVERSIZED : LINE;
+    }
+
+    private void writeResult(Writer results, BulkItem item) throws IOException {
+        BulkResult result;
+        try {
+            item.published().join();
+            result = new BulkResult(item.line(), item.id(), "published", null);
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            result = new BulkResult(item.line(), item.id(), "failed", cause.getMessage());
+        }
+        results.write(objectMapper.writeValueAsString(result));
+        results.write('\n');
+    }
+
+    public record BulkItem(long line, String id, CompletableFuture<Void> published) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BulkResult(long line, String id, String status, String error) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.CloudEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OrderPlacedHandler implements CloudEventHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacedHandler.class);
+
+    @Override
+    public String getTypePattern() {
+        return "com.example.order.placed";
+    }
+
+    @Override
+    public void handle(CloudEvent event) {
+        logger.info("Processing order placed event: {}", event.getId());
+        // Add your order processing logic
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.CloudEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserCreatedHandler implements CloudEventHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCreatedHandler.class);
+
+    @Override
+    public String getTypePattern() {
+        return "com.example.user.created";
+    }
+
+    @Override
+    public void handle(CloudEvent event) {
+        logger.info("Processing user created event: {}", event.getId());
+        // Add your user creation handling logic
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.eventconsumer;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CloudEventHandlerRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CloudEventHandlerRegistry registry;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void mostSpecificPatternWins() throws Exception {
+        Recording exact = new Recording("com.example.order.placed");
+        Recording prefix = new Recording("com.example.order.*");
+        Recording any = new Recording("*");
+        registry = registry(List.of(any, prefix, exact), 1, 10, 1);
+
+        registry.dispatch(event("com.example.order.placed"));
+        registry.dispatch(event("com.example.order.cancelled"));
+        registry.dispatch(event("com.example.user.created"));
+
+        assertThat(exact.await(1)).containsExactly("com.example.order.placed");
+        assertThat(prefix.await(1)).containsExactly("com.example.order.cancelled");
+        assertThat(any.await(1)).containsExactly("com.example.user.created");
+    }
+
+    @Test
+    void unknownTypeIsNotSupported() {
+        registry = registry(List.of(new Recording("com.example.user.created")), 1, 10, 1);
+
+        assertThat(registry.supports("com.example.order.placed")).isFalse();
+        assertThatThrownBy(() -> registry.dispatch(event("com.example.order.placed")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsInvalidAndDuplicatePatterns() {
+        assertThatThrownBy(() -> registry(List.of(new Recording("com.*.placed")), 1, 10, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry(List.of(new Recording("a.*"), new Recording("a.*")), 1, 10, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fullQueueRejectsOnlyItsOwnHandler() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Blocking slow = new Blocking("com.example.slow", release);
+        Recording fast = new Recording("com.example.fast");
+        registry = registry(List.of(slow, fast), 1, 1, 1);
+
+        registry.dispatch(event("com.example.slow"));
+        assertThat(slow.started.await(5, TimeUnit.SECONDS)).isTrue();
+        // One running, one queued; the next does not fit
+        registry.dispatch(event("com.example.slow"));
+        assertThatThrownBy(() -> registry.dispatch(event("com.example.slow")))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        registry.dispatch(event("com.example.fast"));
+        assertThat(fast.await(1)).containsExactly("com.example.fast");
+        release.countDown();
+    }
+
+    @Test
+    void retriesFailedHandlerThenCountsTheFailure() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        CloudEventHandler failing = new CloudEventHandler() {
+            public String getTypePattern() { return "com.example.failing"; }
+
+            public void handle(CloudEvent event) {
+                attempts.incrementAndGet();
+                done.countDown();
+                throw new IllegalStateException("boom");
+            }
+        };
+        registry = registry(List.of(failing), 1, 10, 3);
+
+        registry.dispatch(event("com.example.failing"));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        registry.shutdown();
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("cloudevents.handler.failures").counter().count()).isEqualTo(1);
+    }
+
+    private CloudEventHandlerRegistry registry(List<CloudEventHandler> handlers, int threads, int queueCapacity,
+                                               int maxAttempts) {
+        return new CloudEventHandlerRegistry(handlers, threads, queueCapacity, maxAttempts, Duration.ofMillis(1),
+                new CloudEventMetrics(meterRegistry, 100));
+    }
+
+    private static CloudEvent event(String type) {
+        return CloudEventBuilder.v1()
+                .withId(type + "-" + System.nanoTime())
+                .withType(type)
+                .withSource(URI.create("test"))
+                .build();
+    }
+
+    private static class Recording implements CloudEventHandler {
+
+        private final String pattern;
+        private final List<String> types = new CopyOnWriteArrayList<>();
+
+        Recording(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public String getTypePattern() { return pattern; }
+
+        public void handle(CloudEvent event) {
+            types.add(event.getType());
+        }
+
+        List<String> await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (types.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            return types;
+        }
+    }
+
+    private static class Blocking implements CloudEventHandler {
+
+        private final String pattern;
+        private final CountDownLatch release;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        Blocking(String pattern, CountDownLatch release) {
+            this.pattern = pattern;
+            this.release = release;
+        }
+
+        public String getTypePattern() { return pattern; }
+
+        public void handle(CloudEvent event) throws InterruptedException {
+            started.countDown();
+            release.await();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.eventconsumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudEventMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CloudEventMetrics metrics = new CloudEventMetrics(meterRegistry, 2);
+
+    @Test
+    void foldsTagValuesPastTheCapIntoOther() {
+        long start = System.nanoTime();
+        metrics.recordPublish("type-a", "source", "202", start);
+        metrics.recordPublish("type-b", "source", "202", start);
+        metrics.recordPublish("type-c", "source", "202", start);
+        metrics.recordPublish("type-d", "source", "202", start);
+
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", "type-a").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", "type-b").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", CloudEventMetrics.OTHER).timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.find("broker.publish.latency").tag("type", "type-c").timer()).isNull();
+    }
+
+    @Test
+    void handlerFailuresShareTheTypeCap() {
+        metrics.recordPublish("type-a", "source", "202", System.nanoTime());
+        metrics.recordPublish("type-b", "source", "202", System.nanoTime());
+
+        metrics.recordHandlerFailure("orders", "type-c");
+
+        assertThat(meterRegistry.get("cloudevents.handler.failures").tag("type", CloudEventMetrics.OTHER)
+                .counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.harness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Entry point for the local test harness.
+ *
+ * <pre>
+ * java -jar harness.jar broker --port 9090 --latency 5ms --jitter 5ms --error-rate 0.01 \
+ *     --sink com.example.color=http://localhost:8080/cloudevents --sink http://localhost:8081/
+ * java -jar harness.jar load --rate 500 --duration 30s --mix color-sink=0.5,color-broker=0.3,user=0.1,order=0.1 \
+ *     [--color-app URL] [--events-app URL] [--broker URL] [--json results.json]
+ * </pre>
+ */
+public final class Harness {
+
+    private Harness() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: harness broker|load [--option value ...]");
+            System.exit(2);
+        }
+        Options options = Options.parse(args, 1);
+        switch (args[0]) {
+            case "broker":
+                runBroker(options);
+                break;
+            case "load":
+                runLoad(options);
+                break;
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+        }
+    }
+
+    private static void runBroker(Options options) throws IOException, InterruptedException {
+        StubBroker broker = StubBroker.fromOptions(options);
+        broker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.print(broker.report());
+            broker.stop();
+        }));
+        Thread.currentThread().join();
+    }
+
+    private static void runLoad(Options options) throws IOException {
+        LoadGenerator generator = LoadGenerator.fromOptions(options);
+        double elapsed = generator.run();
+        Map<String, LatencyRecorder.Snapshot> rows = generator.snapshot();
+        System.out.print(Report.text(rows, elapsed));
+
+        String json = options.get("json", null);
+        if (json != null) {
+            Files.writeString(Path.of(json), Report.json(rows, elapsed));
+            System.out.println("Results written to " + json);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.harness;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects latency samples and outcome counts for one stream of requests.
+ *
+ * Samples are kept raw and sorted when a snapshot is taken, which is exact and cheap enough for
+ * the few million requests a local run produces.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private final Map<String, Long> outcomes = new TreeMap<>();
+
+    synchronized void record(long nanos, String outcome) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        outcomes.merge(outcome, 1L, Long::sum);
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long errors = 0;
+        for (Map.Entry<String, Long> outcome : outcomes.entrySet()) {
+            if (!outcome.getKey().startsWith("2")) {
+                errors += outcome.getValue();
+            }
+        }
+        return new Snapshot(count, errors, new TreeMap<>(outcomes),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                count > 0 ? sorted[count - 1] : 0);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Outcomes are HTTP status codes, or a failure name for requests without a response.
+     */
+    record Snapshot(long count, long errors, Map<String, Long> outcomes, long p50, long p99, long p999, long max) {
+
+        double errorRate() {
+            return count > 0 ? (double) errors / count : 0;
+        }
+    }
+}
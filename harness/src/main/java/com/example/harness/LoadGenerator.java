@@ -0,0 +1,241 @@
+package com.example.harness;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load: requests are started on a fixed schedule whether or not earlier ones have completed,
+ * and latency is measured from the scheduled start, so a stalled server shows up as queueing delay
+ * instead of silently lowering the offered rate.
+ */
+final class LoadGenerator {
+
+    private static final String[] COLORS = {"RED", "GREEN", "BLUE", "YELLOW", "PURPLE", "ORANGE", "BLACK", "WHITE"};
+
+    // CloudEvents per color-batch request
+    static final int BATCH_EVENTS = 100;
+
+    /**
+     * Request kinds; each targets one app, directly or through the broker.
+     */
+    enum Scenario {
+        // CloudEvent straight to the color app's sink
+        COLOR_SINK,
+        // BATCH_EVENTS structured CloudEvents in one application/cloudevents-batch+json request to the sink
+        COLOR_BATCH,
+        // CloudEvent to the broker, which fans it out to the sink
+        COLOR_BROKER,
+        // Manual color change published through the color app's outbox
+        COLOR_MANUAL,
+        // Trigger endpoints of the events app, which publish to the broker
+        USER,
+        ORDER;
+
+        String key() {
+            return name().toLowerCase().replace('_', '-');
+        }
+
+        static Scenario of(String key) {
+            return valueOf(key.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final double rate;
+    private final Duration duration;
+    private final Map<Scenario, Double> mix;
+    private final URI colorApp;
+    private final URI eventsApp;
+    private final URI broker;
+    private final int maxOutstanding;
+    private final Duration timeout;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final Map<Scenario, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    LoadGenerator(double rate, Duration duration, Map<Scenario, Double> mix, URI colorApp, URI eventsApp, URI broker,
+                  int maxOutstanding, Duration timeout) {
+        this.rate = rate;
+        this.duration = duration;
+        this.mix = mix;
+        this.colorApp = colorApp;
+        this.eventsApp = eventsApp;
+        this.broker = broker;
+        this.maxOutstanding = maxOutstanding;
+        this.timeout = timeout;
+        mix.keySet().forEach(scenario -> recorders.put(scenario, new LatencyRecorder()));
+    }
+
+    /**
+     * Parses a mix such as {@code color-sink=0.6,user=0.2,order=0.2}; weights need not add up to 1.
+     */
+    static Map<Scenario, Double> parseMix(String spec) {
+        Map<Scenario, Double> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weighted = part.split("=");
+            mix.put(Scenario.of(weighted[0].trim()), weighted.length > 1 ? Double.parseDouble(weighted[1]) : 1.0);
+        }
+        return mix;
+    }
+
+    static LoadGenerator fromOptions(Options options) {
+        return new LoadGenerator(options.getDouble("rate", 100), options.getDuration("duration", "30s"),
+                parseMix(options.get("mix", "color-sink=1")),
+                URI.create(options.get("color-app", "http://localhost:8080")),
+                URI.create(options.get("events-app", "http://localhost:8081")),
+                URI.create(options.get("broker", "http://localhost:9090/eventing-demo/default")),
+                options.getInt("max-outstanding", 10000), options.getDuration("timeout", "10s"));
+    }
+
+    /**
+     * Runs the schedule and waits for the stragglers.
+     *
+     * @return the measured wall-clock time in seconds
+     */
+    double run() {
+        long intervalNanos = (long) (1_000_000_000L / rate);
+        long total = (long) (rate * duration.toMillis() / 1000.0);
+        double totalWeight = mix.values().stream().mapToDouble(Double::doubleValue).sum();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        System.out.printf("Offering %.1f req/s for %s (%d requests), mix %s%n", rate, duration, total, mix);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Scenario scenario = pick(totalWeight);
+            LatencyRecorder recorder = recorders.get(scenario);
+            // Bound client memory when the target falls far behind; counted, not silently skipped
+            if (outstanding.get() >= maxOutstanding) {
+                recorder.record(System.nanoTime() - scheduled, "client-overload");
+                continue;
+            }
+
+            outstanding.incrementAndGet();
+            inFlight.add(client.sendAsync(request(scenario), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        outstanding.decrementAndGet();
+                        recorder.record(System.nanoTime() - scheduled,
+                                response != null ? Integer.toString(response.statusCode()) : failure(e));
+                    }));
+            if (inFlight.size() >= 4096) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.out.printf("%d requests still outstanding after the timeout%n", outstanding.get());
+        } catch (Exception e) {
+            // Individual failures are already recorded
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    Map<String, LatencyRecorder.Snapshot> snapshot() {
+        Map<String, LatencyRecorder.Snapshot> rows = new LinkedHashMap<>();
+        recorders.forEach((scenario, recorder) -> rows.put(scenario.key(), recorder.snapshot()));
+        return rows;
+    }
+
+    private Scenario pick(double totalWeight) {
+        double choice = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (Map.Entry<Scenario, Double> entry : mix.entrySet()) {
+            choice -= entry.getValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+        return mix.keySet().iterator().next();
+    }
+
+    private HttpRequest request(Scenario scenario) {
+        String color = COLORS[ThreadLocalRandom.current().nextInt(COLORS.length)];
+        switch (scenario) {
+            case COLOR_SINK:
+                return colorEvent(colorApp.resolve("/cloudevents"), color);
+            case COLOR_BATCH:
+                return colorBatch(colorApp.resolve("/cloudevents"));
+            case COLOR_BROKER:
+                return colorEvent(broker, color);
+            case COLOR_MANUAL:
+                return json(colorApp.resolve("/api/colors/set"),
+                        "{\"color\":\"" + color + "\",\"source\":\"harness\",\"publish\":\"true\"}");
+            case USER:
+                return json(eventsApp.resolve("/api/users"), "{\"email\":\"" + UUID.randomUUID() + "@example.com\"}");
+            case ORDER:
+                return json(eventsApp.resolve("/api/orders"),
+                        "{\"customerId\":\"harness\",\"amount\":" + ThreadLocalRandom.current().nextInt(1, 500) + "}");
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    // Binary-mode CloudEvent, as the broker delivers it
+    private HttpRequest colorEvent(URI target, String color) {
+        return HttpRequest.newBuilder(target)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("ce-specversion", "1.0")
+                .header("ce-id", UUID.randomUUID().toString())
+                .header("ce-type", "com.example.color.change")
+                .header("ce-source", "harness")
+                .header("ce-time", OffsetDateTime.now().toString())
+                .POST(HttpRequest.BodyPublishers.ofString("{\"color\":\"" + color + "\"}"))
+                .build();
+    }
+
+    private HttpRequest colorBatch(URI target) {
+        StringBuilder body = new StringBuilder(BATCH_EVENTS * 200).append('[');
+        String time = OffsetDateTime.now().toString();
+        for (int i = 0; i < BATCH_EVENTS; i++) {
+            String color = COLORS[ThreadLocalRandom.current().nextInt(COLORS.length)];
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"specversion\":\"1.0\",\"id\":\"").append(UUID.randomUUID())
+                    .append("\",\"type\":\"com.example.color.change\",\"source\":\"harness\",\"time\":\"").append(time)
+                    .append("\",\"datacontenttype\":\"application/json\",\"data\":{\"color\":\"").append(color).append("\"}}");
+        }
+        return HttpRequest.newBuilder(target)
+                .timeout(timeout)
+                .header("Content-Type", "application/cloudevents-batch+json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                .build();
+    }
+
+    private HttpRequest json(URI target, String body) {
+        return HttpRequest.newBuilder(target)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String failure(Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.harness;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code --name value} command-line options; a name may be repeated.
+ */
+final class Options {
+
+    private final Map<String, List<String>> values = new LinkedHashMap<>();
+
+    static Options parse(String[] args, int from) {
+        Options options = new Options();
+        for (int i = from; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+            }
+            options.values.computeIfAbsent(args[i].substring(2), name -> new ArrayList<>()).add(args[++i]);
+        }
+        return options;
+    }
+
+    String get(String name, String defaultValue) {
+        List<String> all = values.get(name);
+        return all != null ? all.get(all.size() - 1) : defaultValue;
+    }
+
+    List<String> all(String name) {
+        return values.getOrDefault(name, List.of());
+    }
+
+    int getInt(String name, int defaultValue) {
+        return Integer.parseInt(get(name, Integer.toString(defaultValue)));
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return Double.parseDouble(get(name, Double.toString(defaultValue)));
+    }
+
+    /**
+     * Accepts {@code 250ms}, {@code 30s}, {@code 2m} or an ISO-8601 duration.
+     */
+    Duration getDuration(String name, String defaultValue) {
+        String value = get(name, defaultValue);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s") && !value.startsWith("P")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m") && !value.startsWith("P")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.parse(value);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.harness;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Renders recorder snapshots as a text table or as JSON.
+ */
+final class Report {
+
+    private static final String ROW = "%-22s %9s %9s %8s %10s %9s %9s %9s %9s  %s%n";
+
+    private Report() {
+    }
+
+    static String text(Map<String, LatencyRecorder.Snapshot> rows, double elapsedSeconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, ROW, "stream", "count", "errors", "err %", "per sec", "p50 ms", "p99 ms", "p999 ms", "max ms", "outcomes"));
+        rows.forEach((name, s) -> out.append(String.format(Locale.ROOT, ROW, name, s.count(), s.errors(),
+                String.format(Locale.ROOT, "%.2f", s.errorRate() * 100), String.format(Locale.ROOT, "%.1f", s.count() / elapsedSeconds),
+                millis(s.p50()), millis(s.p99()), millis(s.p999()), millis(s.max()), outcomes(s.outcomes()))));
+        return out.toString();
+    }
+
+    static String json(Map<String, LatencyRecorder.Snapshot> rows, double elapsedSeconds) {
+        return rows.entrySet().stream().map(row -> {
+            LatencyRecorder.Snapshot s = row.getValue();
+            return String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"errors\":%d,\"errorRate\":%.6f,\"throughput\":%.3f,"
+                            + "\"p50Ms\":%s,\"p99Ms\":%s,\"p999Ms\":%s,\"maxMs\":%s,\"outcomes\":{%s}}",
+                    row.getKey(), s.count(), s.errors(), s.errorRate(), s.count() / elapsedSeconds,
+                    millis(s.p50()), millis(s.p99()), millis(s.p999()), millis(s.max()),
+                    s.outcomes().entrySet().stream().map(o -> "\"" + o.getKey() + "\":" + o.getValue())
+                            .collect(Collectors.joining(",")));
+        }).collect(Collectors.joining(",", "{\"elapsedSeconds\":" + String.format(Locale.ROOT, "%.3f", elapsedSeconds) + ",\"streams\":{", "}}"));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String outcomes(Map<String, Long> outcomes) {
+        return outcomes.entrySet().stream().map(o -> o.getKey() + "=" + o.getValue()).collect(Collectors.joining(" "));
+    }
+}
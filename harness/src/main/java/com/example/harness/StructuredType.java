@@ -0,0 +1,118 @@
+package com.example.harness;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the {@code type} attribute out of a structured-mode CloudEvent body, so the stub broker can route
+ * structured JSON and protobuf events like binary ones. Only the attribute is located; nothing else is parsed.
+ */
+final class StructuredType {
+
+    private static final String JSON = "application/cloudevents+json";
+    private static final String PROTOBUF = "application/cloudevents+protobuf";
+
+    // CloudEvent.type in the CloudEvents protobuf format
+    private static final int PROTO_TYPE_FIELD = 4;
+
+    private StructuredType() {
+    }
+
+    /**
+     * @return the event type, or an empty string when the content type is not structured or the type is absent
+     */
+    static String of(String contentType, byte[] body) {
+        if (contentType == null) {
+            return "";
+        }
+        String mediaType = contentType.toLowerCase();
+        if (mediaType.startsWith(JSON)) {
+            return json(new String(body, StandardCharsets.UTF_8));
+        }
+        if (mediaType.startsWith(PROTOBUF)) {
+            return protobuf(body);
+        }
+        return "";
+    }
+
+    // Scans for the top-level "type" key, skipping strings and nested objects such as data
+    static String json(String text) {
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                int end = stringEnd(text, i);
+                if (depth == 1 && text.startsWith("type\"", i + 1) && end == i + 5) {
+                    int colon = skipSpace(text, end + 1);
+                    int value = skipSpace(text, colon + 1);
+                    if (colon < text.length() && text.charAt(colon) == ':'
+                            && value < text.length() && text.charAt(value) == '"') {
+                        return text.substring(value + 1, stringEnd(text, value));
+                    }
+                }
+                i = end;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        return "";
+    }
+
+    static String protobuf(byte[] body) {
+        int[] position = {0};
+        while (position[0] < body.length) {
+            long tag = varint(body, position);
+            int field = (int) (tag >>> 3);
+            switch ((int) (tag & 7)) {
+                case 0 -> varint(body, position);
+                case 1 -> position[0] += 8;
+                case 2 -> {
+                    int length = (int) varint(body, position);
+                    if (field == PROTO_TYPE_FIELD && position[0] + length <= body.length) {
+                        return new String(body, position[0], length, StandardCharsets.UTF_8);
+                    }
+                    position[0] += length;
+                }
+                case 5 -> position[0] += 4;
+                default -> {
+                    return "";
+                }
+            }
+        }
+        return "";
+    }
+
+    private static long varint(byte[] body, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64 && position[0] < body.length; shift += 7) {
+            byte b = body[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    // Index of the quote closing the string that opens at start
+    private static int stringEnd(String text, int start) {
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    private static int skipSpace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for Knative's broker-ingress: accepts binary or structured (JSON or protobuf) CloudEvents on any path,
+ * optionally delays or fails them, and fans accepted events out to the sinks whose type prefix matches.
+ *
+ * {@code GET /_stats} returns the ingress and per-sink delivery report; delivery latency is measured
+ * from arrival at the broker until the sink answered.
+ */
+final class StubBroker {
+
+    private final int port;
+    private final Duration latency;
+    private final Duration jitter;
+    private final double errorRate;
+    private final List<Sink> sinks;
+    private final int threads;
+
+    private final LatencyRecorder ingress = new LatencyRecorder();
+    private final Map<String, LatencyRecorder> deliveries = new LinkedHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private long startNanos;
+
+    StubBroker(int port, Duration latency, Duration jitter, double errorRate, List<Sink> sinks, int threads) {
+        this.port = port;
+        this.latency = latency;
+        this.jitter = jitter;
+        this.errorRate = errorRate;
+        this.sinks = sinks;
+        this.threads = threads;
+        sinks.forEach(sink -> deliveries.put("deliver " + sink.name(), new LatencyRecorder()));
+    }
+
+    static StubBroker fromOptions(Options options) {
+        List<Sink> sinks = new ArrayList<>();
+        for (String spec : options.all("sink")) {
+            sinks.add(Sink.parse(spec));
+        }
+        return new StubBroker(options.getInt("port", 9090), options.getDuration("latency", "0ms"),
+                options.getDuration("jitter", "0ms"), options.getDouble("error-rate", 0), sinks,
+                options.getInt("threads", 256));
+    }
+
+    void start() throws IOException {
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        startNanos = System.nanoTime();
+        server.start();
+        System.out.printf("Stub broker on :%d, latency %s +%s, error rate %.3f, sinks %s%n",
+                port, latency, jitter, errorRate, sinks);
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    String report() {
+        Map<String, LatencyRecorder.Snapshot> rows = new LinkedHashMap<>();
+        rows.put("broker ingress", ingress.snapshot());
+        deliveries.forEach((name, recorder) -> rows.put(name, recorder.snapshot()));
+        return Report.text(rows, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long arrived = System.nanoTime();
+        try {
+            if ("GET".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().equals("/_stats")) {
+                respond(exchange, 200, report());
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "");
+                return;
+            }
+
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            Map<String, String> headers = new LinkedHashMap<>();
+            exchange.getRequestHeaders().forEach((name, values) -> {
+                String lower = name.toLowerCase();
+                if (lower.startsWith("ce-") || lower.equals("content-type")) {
+                    headers.put(lower, values.get(0));
+                }
+            });
+
+            delay();
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 500, "injected failure");
+                ingress.record(System.nanoTime() - arrived, "500");
+                return;
+            }
+            respond(exchange, 202, "");
+            ingress.record(System.nanoTime() - arrived, "202");
+
+            // Structured events carry the type in the body; batches have no single type and only reach sinks without a filter
+            String type = headers.containsKey("ce-type")
+                    ? headers.get("ce-type")
+                    : StructuredType.of(headers.get("content-type"), body);
+            for (Sink sink : sinks) {
+                if (type.startsWith(sink.typePrefix())) {
+                    deliver(sink, headers, body, arrived);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void deliver(Sink sink, Map<String, String> headers, byte[] body, long arrived) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(sink.uri())
+                .timeout(Duration.ofSeconds(10))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+        request.header("ce-knativearrivaltime", OffsetDateTime.now().toString());
+        LatencyRecorder recorder = deliveries.get("deliver " + sink.name());
+        client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> recorder.record(System.nanoTime() - arrived,
+                        response != null ? Integer.toString(response.statusCode()) : e.getClass().getSimpleName()));
+    }
+
+    private void delay() {
+        long millis = latency.toMillis();
+        if (!jitter.isZero()) {
+            millis += ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1);
+        }
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * A trigger: events whose type starts with {@code typePrefix} are delivered to {@code uri}.
+     * Specified as {@code url} or {@code typePrefix=url}.
+     */
+    record Sink(String typePrefix, URI uri) {
+
+        static Sink parse(String spec) {
+            int separator = spec.indexOf('=');
+            if (separator > 0 && !spec.substring(0, separator).contains("://")) {
+                return new Sink(spec.substring(0, separator), URI.create(spec.substring(separator + 1)));
+            }
+            return new Sink("", URI.create(spec));
+        }
+
+        String name() {
+            return (typePrefix.isEmpty() ? "*" : typePrefix) + " -> " + uri.getPort();
+        }
+
+        @Override
+        public String toString() {
+            return (typePrefix.isEmpty() ? "*" : typePrefix) + "=" + uri;
+        }
+    }
+}
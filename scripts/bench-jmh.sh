@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Builds and runs the JMH benchmarks. Extra arguments go to JMH, e.g. a benchmark regex or -p tableSize=1000.
+# Results are written as JSON so runs can be compared between releases.
+
+# Source the common library
+source "$(dirname "$0")/library.sh"
+
+# Get project root directory
+PROJECT_ROOT=$(get_project_root)
+
+RESULT_FILE="${RESULT_FILE:-$PROJECT_ROOT/benchmarks/target/jmh-result-$(date +%Y%m%d-%H%M%S).json}"
+
+say "Installing application jar..."
+(cd "$PROJECT_ROOT" && ./mvnw -q -DskipTests install) || { say_error "Application build failed"; exit 1; }
+
+say "Building benchmarks..."
+(cd "$PROJECT_ROOT" && ./mvnw -q -f benchmarks/pom.xml package) || { say_error "Benchmark build failed"; exit 1; }
+
+say "Running benchmarks..."
+java -jar "$PROJECT_ROOT/benchmarks/target/benchmarks.jar" -rf json -rff "$RESULT_FILE" "$@" || exit 1
+
+say_success "Results written to $RESULT_FILE"
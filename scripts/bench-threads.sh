@@ -0,0 +1,52 @@
+#!/bin/bash
+
+# Compares platform-thread and virtual-thread request handling at several concurrency levels.
+# Requires a jar built with the java21 profile (./mvnw -Pjava21 package), a Java 21 runtime and `hey`.
+
+# Source the common library
+source "$(dirname "$0")/library.sh"
+
+# Get project root directory
+PROJECT_ROOT=$(get_project_root)
+
+# Configuration
+API_ENDPOINT="http://localhost:8080"
+JAR="${JAR:-$PROJECT_ROOT/target/knative-color-demo-0.0.1-SNAPSHOT-exec.jar}"
+LEVELS="${LEVELS:-10 100 1000}"
+REQUESTS_PER_CLIENT="${REQUESTS_PER_CLIENT:-50}"
+RESULTS_DIR="${RESULTS_DIR:-$PROJECT_ROOT/target/bench-threads}"
+
+if ! command_exists hey; then
+    say_error "hey is required (https://github.com/rakyll/hey)"
+    exit 1
+fi
+
+mkdir -p "$RESULTS_DIR"
+
+for mode in platform virtual; do
+    say "Starting application with $mode threads..."
+    # The limiter is disabled so the thread model alone bounds concurrency
+    VIRTUAL_THREADS=$([ "$mode" = virtual ] && echo true || echo false) CONCURRENCY_LIMIT=0 \
+        java -jar "$JAR" > "$RESULTS_DIR/$mode-app.log" 2>&1 &
+    APP_PID=$!
+    wait_for_application "$API_ENDPOINT" 30 || { kill $APP_PID; exit 1; }
+
+    for level in $LEVELS; do
+        requests=$((level * REQUESTS_PER_CLIENT))
+
+        say "$mode: $level concurrent color writes"
+        hey -c "$level" -n "$requests" -m POST -T application/json \
+            -d '{"color": "BLUE", "source": "bench", "publish": "false"}' \
+            "$API_ENDPOINT/api/colors/set" > "$RESULTS_DIR/$mode-set-$level.txt"
+        grep -E "Requests/sec|99%|Status code|\[[0-9]+\]" "$RESULTS_DIR/$mode-set-$level.txt"
+
+        say "$mode: $level concurrent event page reads"
+        hey -c "$level" -n "$requests" "$API_ENDPOINT/api/events?limit=50" > "$RESULTS_DIR/$mode-events-$level.txt"
+        grep -E "Requests/sec|99%|Status code|\[[0-9]+\]" "$RESULTS_DIR/$mode-events-$level.txt"
+    done
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null
+done
+
+say_success "Results written to $RESULTS_DIR"
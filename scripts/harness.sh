@@ -0,0 +1,70 @@
+#!/bin/bash
+
+# Runs the publish -> broker -> sink loop on one machine: a stub broker, the color app and the events app,
+# then drives them with the open-loop load generator. Arguments go to the load generator, e.g.
+#   ./scripts/harness.sh --rate 500 --duration 60s --mix color-sink=0.4,color-broker=0.3,user=0.2,order=0.1
+# Broker behaviour is set through BROKER_LATENCY, BROKER_JITTER and BROKER_ERROR_RATE; ACK_MODE (COMMIT or ENQUEUE)
+# sets the sink's cloudevents.ingest.ack-mode.
+
+# Source the common library
+source "$(dirname "$0")/library.sh"
+
+# Get project root directory
+PROJECT_ROOT=$(get_project_root)
+
+COLOR_PORT="${COLOR_PORT:-8080}"
+EVENTS_PORT="${EVENTS_PORT:-8081}"
+BROKER_PORT="${BROKER_PORT:-9090}"
+BROKER_URL="http://localhost:$BROKER_PORT/eventing-demo/default"
+RESULTS_DIR="${RESULTS_DIR:-$PROJECT_ROOT/harness/target/results}"
+HARNESS_JAR="$PROJECT_ROOT/harness/target/harness.jar"
+
+mkdir -p "$RESULTS_DIR"
+PIDS=()
+cleanup() {
+    for pid in "${PIDS[@]}"; do
+        kill "$pid" 2>/dev/null
+    done
+    wait 2>/dev/null
+}
+trap cleanup EXIT
+
+say "Building..."
+(cd "$PROJECT_ROOT" && ./mvnw -q -DskipTests package) || { say_error "Color app build failed"; exit 1; }
+(cd "$PROJECT_ROOT" && ./mvnw -q -DskipTests -f events/pom.xml package) || { say_error "Events app build failed"; exit 1; }
+(cd "$PROJECT_ROOT" && ./mvnw -q -f harness/pom.xml package) || { say_error "Harness build failed"; exit 1; }
+
+say "Starting stub broker on :$BROKER_PORT..."
+java -jar "$HARNESS_JAR" broker --port "$BROKER_PORT" \
+    --latency "${BROKER_LATENCY:-0ms}" --jitter "${BROKER_JITTER:-0ms}" --error-rate "${BROKER_ERROR_RATE:-0}" \
+    --sink "com.example.color=http://localhost:$COLOR_PORT/cloudevents" \
+    --sink "com.example.user=http://localhost:$EVENTS_PORT/" \
+    --sink "com.example.order=http://localhost:$EVENTS_PORT/" > "$RESULTS_DIR/broker.log" 2>&1 &
+PIDS+=($!)
+
+say "Starting color app on :$COLOR_PORT and events app on :$EVENTS_PORT..."
+SERVER_PORT=$COLOR_PORT KNATIVE_BROKER_URL=$BROKER_URL OUTBOX_DIR="$RESULTS_DIR/outbox" \
+    java $JAVA_OPTS -jar "$PROJECT_ROOT/target/knative-color-demo-0.0.1-SNAPSHOT-exec.jar" \
+    --cloudevents.ingest.ack-mode="${ACK_MODE:-COMMIT}" > "$RESULTS_DIR/color-app.log" 2>&1 &
+PIDS+=($!)
+SERVER_PORT=$EVENTS_PORT KNATIVE_BROKER_URL=$BROKER_URL \
+    java $JAVA_OPTS -jar "$PROJECT_ROOT"/events/target/eventconsumer-*.jar > "$RESULTS_DIR/events-app.log" 2>&1 &
+PIDS+=($!)
+
+wait_for_application "http://localhost:$COLOR_PORT" 60 || exit 1
+for i in $(seq 1 60); do
+    curl -s "http://localhost:$EVENTS_PORT/actuator/health" >/dev/null 2>&1 && break
+    sleep 2
+done
+
+say "Running load..."
+java -jar "$HARNESS_JAR" load \
+    --color-app "http://localhost:$COLOR_PORT" --events-app "http://localhost:$EVENTS_PORT" --broker "$BROKER_URL" \
+    --json "$RESULTS_DIR/load.json" "$@"
+
+# Give the outbox and broker fan-out a moment to drain before reading delivery stats
+sleep 2
+say "Broker deliveries:"
+curl -s "http://localhost:$BROKER_PORT/_stats" | tee "$RESULTS_DIR/broker-stats.txt"
+
+say_success "Results in $RESULTS_DIR"
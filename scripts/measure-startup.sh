@@ -0,0 +1,115 @@
+#!/bin/bash
+
+# Measures time-to-first-accepted-CloudEvent for the jvm, fast-start and native image of each module.
+# Build the artifacts the Dockerfiles copy first:
+#   ./mvnw package                      (jvm)
+#   ./mvnw -Pfast-start package         (fast-start, AOT + AppCDS)
+#   ./mvnw -Pnative native:compile      (native, needs GraalVM)
+# and the same in events/. Variants whose artifact is missing are skipped.
+
+# Source the common library
+source "$(dirname "$0")/library.sh"
+
+# Get project root directory
+PROJECT_ROOT=$(get_project_root)
+
+# Configuration
+VARIANTS="${VARIANTS:-jvm fast-start native}"
+MODULES="${MODULES:-color events}"
+RUNS="${RUNS:-3}"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-60}"
+PORT="${PORT:-18080}"
+RESULTS_FILE="${RESULTS_FILE:-$PROJECT_ROOT/target/startup-times.txt}"
+
+if ! command_exists docker; then
+    say_error "docker is required"
+    exit 1
+fi
+
+now_ms() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+dockerfile_for() {
+    case "$1" in
+        jvm) echo "Dockerfile" ;;
+        fast-start) echo "Dockerfile.fast-start" ;;
+        native) echo "Dockerfile.native" ;;
+    esac
+}
+
+# Posts one binary-mode CloudEvent the module accepts and prints the HTTP status
+post_event() {
+    local module="$1"
+    if [ "$module" = color ]; then
+        curl -s -o /dev/null -w '%{http_code}' -X POST "http://localhost:$PORT/cloudevents" \
+            -H "Content-Type: application/json" \
+            -H "ce-id: startup-$(now_ms)-$RANDOM" \
+            -H "ce-type: com.example.color.change" \
+            -H "ce-source: measure-startup" \
+            -H "ce-specversion: 1.0" \
+            -d '{"color": "GREEN", "source": "measure-startup"}' 2>/dev/null
+    else
+        curl -s -o /dev/null -w '%{http_code}' -X POST "http://localhost:$PORT/" \
+            -H "Content-Type: application/json" \
+            -H "ce-id: startup-$(now_ms)-$RANDOM" \
+            -H "ce-type: com.example.user.created" \
+            -H "ce-source: measure-startup" \
+            -H "ce-specversion: 1.0" \
+            -d '{"userId": "startup", "email": "startup@example.com"}' 2>/dev/null
+    fi
+}
+
+# Starts the container and prints the milliseconds until the first 2xx, or fails on timeout
+measure_once() {
+    local module="$1" image="$2"
+    local start deadline status
+    start=$(now_ms)
+    deadline=$((start + TIMEOUT_SECONDS * 1000))
+    docker run -d --rm --name measure-startup -p "$PORT:8080" "$image" > /dev/null || return 1
+    while [ "$(now_ms)" -lt "$deadline" ]; do
+        status=$(post_event "$module")
+        if [[ "$status" == 2* ]]; then
+            echo $(($(now_ms) - start))
+            docker rm -f measure-startup > /dev/null
+            return 0
+        fi
+        sleep 0.05
+    done
+    docker rm -f measure-startup > /dev/null
+    return 1
+}
+
+mkdir -p "$(dirname "$RESULTS_FILE")"
+: > "$RESULTS_FILE"
+
+for module in $MODULES; do
+    module_dir="$PROJECT_ROOT"
+    [ "$module" = events ] && module_dir="$PROJECT_ROOT/events"
+
+    for variant in $VARIANTS; do
+        image="knative-demo-startup-$module:$variant"
+        say "Building $module ($variant)..."
+        if ! docker build -q -f "$module_dir/$(dockerfile_for "$variant")" -t "$image" "$module_dir" > /dev/null; then
+            say_warning "Skipping $module ($variant): image build failed, is the artifact built?"
+            continue
+        fi
+
+        times=""
+        for run in $(seq 1 "$RUNS"); do
+            if elapsed=$(measure_once "$module" "$image"); then
+                times="$times $elapsed"
+            else
+                say_error "$module ($variant) did not accept an event within ${TIMEOUT_SECONDS}s"
+            fi
+        done
+
+        if [ -n "$times" ]; then
+            best=$(echo $times | tr ' ' '\n' | sort -n | head -1)
+            line=$(printf "%-7s %-11s first accepted CloudEvent: best %6d ms  (runs:%s)" "$module" "$variant" "$best" "$times")
+            echo "$line" | tee -a "$RESULTS_FILE"
+        fi
+    done
+done
+
+say_success "Results written to $RESULTS_FILE"
@@ -19,7 +19,7 @@ say "Testing CloudEvents endpoint..."
 if [ "$START" = true ]; then
     # Start the application in the background
     say "Starting Spring Boot application..."
-    java -jar "$PROJECT_ROOT/target/knative-color-demo-0.0.1-SNAPSHOT.jar" &
+    java -jar "$PROJECT_ROOT/target/knative-color-demo-0.0.1-SNAPSHOT-exec.jar" &
     APP_PID=$!
 
     # Wait for the application to start
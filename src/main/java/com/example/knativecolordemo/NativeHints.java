@@ -0,0 +1,35 @@
+package com.example.knativecolordemo;
+
+import com.example.knativecolordemo.logging.CountingAsyncAppender;
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.CursorPage;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.protobuf.ProtobufFormat;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and resource hints for the native image that Spring's AOT processing cannot infer.
+ *
+ * Covers types serialized by hand-built or injected ObjectMappers outside controller signatures,
+ * the CloudEvents JSON and protobuf formats loaded through {@link java.util.ServiceLoader}, and the Logback
+ * appender instantiated by class name from {@code logback-spring.xml}.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                ColorChange.class, CloudEventRecord.class, CursorPage.class);
+
+        hints.resources().registerPattern("META-INF/services/io.cloudevents.core.format.EventFormat");
+        hints.reflection().registerType(JsonFormat.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        hints.reflection().registerType(ProtobufFormat.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        hints.reflection().registerType(CountingAsyncAppender.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+}
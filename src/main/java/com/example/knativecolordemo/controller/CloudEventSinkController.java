@@ -1,115 +1,231 @@
 package com.example.knativecolordemo.controller;
 
+import com.example.knativecolordemo.model.CloudEventRecord;
 import com.example.knativecolordemo.model.ColorChange;
-import com.example.knativecolordemo.service.CloudEventService;
-import com.example.knativecolordemo.service.ColorService;
+import com.example.knativecolordemo.service.CloudEventIngestService;
+import com.example.knativecolordemo.service.CloudEventMetrics;
+import com.example.knativecolordemo.service.ColorPayloadReader;
+import com.example.knativecolordemo.service.DuplicateEventFilter;
+import com.example.knativecolordemo.service.EventAuditLogger;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.message.MessageReader;
 import io.cloudevents.http.HttpMessageFactory;
+import io.cloudevents.jackson.JsonFormat;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/cloudevents")
 public class CloudEventSinkController {
 
+    private static final Logger logger = LoggerFactory.getLogger(CloudEventSinkController.class);
+
+    @Autowired
+    private CloudEventIngestService cloudEventIngestService;
+
     @Autowired
-    private CloudEventService cloudEventService;
+    private DuplicateEventFilter duplicateEventFilter;
 
     @Autowired
-    private ColorService colorService;
+    private EventAuditLogger eventAuditLogger;
+
+    @Autowired
+    private CloudEventMetrics cloudEventMetrics;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String BATCH_CONTENT_TYPE = "application/cloudevents-batch+json";
+
+    // Decodes batch elements with the CloudEvents JSON format
+    private final ObjectMapper batchMapper = new ObjectMapper().registerModule(JsonFormat.getCloudEventJacksonModule());
+
+    @Value("${cloudevents.batch.max-events:1000}")
+    private int maxBatchEvents;
 
     @PostMapping
-    public ResponseEntity<String> receiveCloudEvent(
-            @RequestBody(required = false) String body,
+    public CompletableFuture<ResponseEntity<String>> receiveCloudEvent(
+            @RequestBody(required = false) byte[] body,
             @RequestHeader HttpHeaders headers) {
 
+        // Binary-mode redeliveries are answered from the headers alone, before the body is parsed
+        String headerId = headers.getFirst("ce-id");
+        String headerSource = headers.getFirst("ce-source");
+        boolean checkedHeaders = headerId != null && headerSource != null;
+        if (checkedHeaders && duplicateEventFilter.isDuplicate(headerSource, headerId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.accepted().<String>build());
+        }
+
         try {
 
-            // Parse the CloudEvent from HTTP request
+            // Parse the CloudEvent straight from the request headers and bytes, without copying either
             MessageReader messageReader = HttpMessageFactory.createReader(
-                headers.toSingleValueMap(),
-                body != null ? body.getBytes() : new byte[0]
+                putHeader -> headers.forEach((name, values) -> {
+                    if (!values.isEmpty()) {
+                        putHeader.accept(name, values.get(0));
+                    }
+                }),
+                body != null ? body : EMPTY_BODY
             );
 
+            // Structured mode (application/cloudevents+json or +protobuf) is detected from the content type
             CloudEvent event = messageReader.toEvent();
-            // Extract CloudEvent headers
-            String eventId = event.getId();
-            String eventType = event.getType();
-            String source = event.getSource().toString();
-            String specVersion = event.getSpecVersion().toString();
-            String subject = event.getSubject();
-            String timeHeader = event.getTime().toString();
-
-            // Set defaults if headers are missing
-            if (eventId == null) eventId = "unknown-" + System.currentTimeMillis();
-            if (eventType == null) eventType = "unknown.event";
-            if (source == null) source = "unknown-source";
-
-            ZonedDateTime timestamp = LocalDateTime.now().atZone(ZoneId.systemDefault());
-            if (timeHeader != null) {
-                try {
-                    timestamp = OffsetDateTime.parse(timeHeader).toZonedDateTime();
-                } catch (Exception e) {
-                    System.err.println("Failed to parse time header: " + timeHeader);
-                }
-            }
+            String eventId = idOf(event);
+            String source = sourceOf(event);
 
-            String data = body != null ? body : "";
+            if (!checkedHeaders && duplicateEventFilter.isDuplicate(source, eventId)) {
+                return CompletableFuture.completedFuture(ResponseEntity.accepted().<String>build());
+            }
+            String dedupSource = source;
+            String dedupId = eventId;
 
-            System.out.println("Received CloudEvent:");
-            System.out.println("  ID: " + eventId);
-            System.out.println("  Type: " + eventType);
-            System.out.println("  Source: " + source);
-            System.out.println("  Subject: " + subject);
-            System.out.println("  Time: " + timeHeader);
-            System.out.println("  Data: " + data);
+            CloudEventIngestService.Item item = toItem(event, eventId, source);
+            try {
+                return cloudEventIngestService.submit(item.record(), item.colorChange())
+                        .thenApply(committed -> ResponseEntity.accepted().<String>build())
+                        .exceptionally(e -> {
+                            // Let the broker's retry through the duplicate filter
+                            duplicateEventFilter.forget(dedupSource, dedupId);
+                            return ResponseEntity.internalServerError().body("Failed to persist CloudEvent");
+                        });
+            } catch (RejectedExecutionException e) {
+                duplicateEventFilter.forget(dedupSource, dedupId);
+                throw e;
+            }
 
+        } catch (RejectedExecutionException e) {
+            // Knative delivery retries 429 with backoff
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage()));
+        } catch (Exception e) {
+            if (checkedHeaders) {
+                duplicateEventFilter.forget(headerSource, headerId);
+            }
+            logger.warn("Failed to process CloudEvent: {}", e.getMessage());
+            logger.debug("CloudEvent decode failure", e);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Failed to process CloudEvent: " + e.getMessage()));
+        }
+    }
 
-            // Save the cloud event
-            cloudEventService.saveCloudEvent(eventId, eventType, source, timestamp, data, subject);
+    /**
+     * Batched content mode: a JSON array of structured CloudEvents, decoded one element at a time and
+     * queued for persistence as a single unit.
+     *
+     * Answers with one result per element, in order: 202 when stored or already received, 400 when the
+     * element is not a valid CloudEvent, 500 when it could not be stored. The batch is answered 200 unless an
+     * element got 500, in which case it is answered 500 so the broker redelivers it; elements already stored
+     * are then acknowledged by the duplicate filter. The whole batch gets 400 when the
+     * body is not a JSON array, 413 when it exceeds cloudevents.batch.max-events and 429 when the ingest
+     * queue cannot take it; no event of such a batch is stored.
+     */
+    @PostMapping(consumes = BATCH_CONTENT_TYPE)
+    public CompletableFuture<ResponseEntity<List<BatchResult>>> receiveBatch(InputStream body) {
+        List<BatchResult> results = new ArrayList<>();
+        List<CloudEventIngestService.Item> items = new ArrayList<>();
+        List<Integer> itemIndexes = new ArrayList<>();
 
-            // Check if this is a color change event
+        try (JsonParser parser = batchMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "Unterminated CloudEvent batch");
+                }
+                int index = results.size();
+                if (index >= maxBatchEvents) {
+                    forget(items);
+                    return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+                }
 
-            if ((eventType.equals("com.example.color.change") || eventType.equals("com.example.color.manual.change")) && body != null && !body.trim().isEmpty()) {
+                // Only this element is held in memory, not the whole array
+                JsonNode node = batchMapper.readTree(parser);
+                CloudEvent event;
                 try {
-                    JsonNode jsonData = objectMapper.readTree(body);
-                    if (jsonData.has("color")) {
-                        String colorStr = jsonData.get("color").asText();
-                        ColorChange.Color color = ColorChange.Color.valueOf(colorStr.toUpperCase());
-
-                        // Update the current color
-                        colorService.setColor(color, "cloudevent:" + source);
+                    event = batchMapper.treeToValue(node, CloudEvent.class);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    results.add(new BatchResult(index, node.path("id").asText(null), HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()));
+                    continue;
+                }
 
-                        System.out.println("Updated color to: " + color);
-                    }
-                } catch (Exception e) {
-                    // Log error but don't fail the event processing
-                    System.err.println("Failed to process color change from CloudEvent: " + e.getMessage());
+                String eventId = idOf(event);
+                String source = sourceOf(event);
+                if (duplicateEventFilter.isDuplicate(source, eventId)) {
+                    results.add(new BatchResult(index, eventId, HttpStatus.ACCEPTED.value(), null));
+                    continue;
                 }
+                results.add(null);
+                items.add(toItem(event, eventId, source));
+                itemIndexes.add(index);
             }
-            return ResponseEntity.accepted().build();
+        } catch (IOException e) {
+            forget(items);
+            logger.warn("Failed to decode CloudEvent batch: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
 
-        } catch (Exception e) {
-            System.err.println("Failed to process CloudEvent: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.badRequest().body("Failed to process CloudEvent: " + e.getMessage());
+        List<CompletableFuture<Void>> committed;
+        try {
+            committed = cloudEventIngestService.submitAll(items);
+        } catch (RejectedExecutionException e) {
+            forget(items);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+
+        CompletableFuture<?>[] outcomes = new CompletableFuture<?>[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            int index = itemIndexes.get(i);
+            CloudEventRecord record = items.get(i).record();
+            outcomes[i] = committed.get(i).handle((done, e) -> {
+                if (e == null) {
+                    results.set(index, new BatchResult(index, record.getEventId(), HttpStatus.ACCEPTED.value(), null));
+                } else {
+                    duplicateEventFilter.forget(record.getSource(), record.getEventId());
+                    results.set(index, new BatchResult(index, record.getEventId(),
+                            HttpStatus.INTERNAL_SERVER_ERROR.value(), "Failed to persist CloudEvent"));
+                }
+                return null;
+            });
         }
+        return CompletableFuture.allOf(outcomes).thenApply(done -> {
+            // A 2xx would ack the failed elements too; invalid ones stay 400 since a retry cannot fix them
+            boolean failed = results.stream().anyMatch(result -> result.status() >= 500);
+            return ResponseEntity.status(failed ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK).body(results);
+        });
     }
 
     // Health check endpoint for Knative
@@ -118,6 +234,64 @@ public class CloudEventSinkController {
         return ResponseEntity.ok(Map.of("status", "healthy", "timestamp", LocalDateTime.now().atZone(ZoneId.systemDefault()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
     }
 
+    /**
+     * Records the event's lag and audit entry and maps it to what the ingest service stores,
+     * including the color change it carries, if any.
+     */
+    private CloudEventIngestService.Item toItem(CloudEvent event, String eventId, String source) {
+        String eventType = event.getType() != null ? event.getType() : "unknown.event";
+        String subject = event.getSubject();
+        OffsetDateTime time = event.getTime();
+
+        cloudEventMetrics.recordLag(eventType, source, time);
+
+        ZonedDateTime timestamp = time != null ? time.toZonedDateTime() : ZonedDateTime.now();
+
+        // In binary mode the data is the request body itself; in structured and batched mode, the decoded data field
+        byte[] payload = event.getData() != null ? event.getData().toBytes() : EMPTY_BODY;
+        String data = new String(payload, StandardCharsets.UTF_8);
+
+        eventAuditLogger.received(eventId, eventType, source, subject, time, data);
+
+        CloudEventRecord record = new CloudEventRecord(eventId, eventType, source, timestamp, data, subject);
+
+        // Check if this is a color change event
+        ColorChange colorChange = null;
+        if ((eventType.equals("com.example.color.change") || eventType.equals("com.example.color.manual.change")) && payload.length > 0) {
+            try {
+                ColorChange.Color color = ColorPayloadReader.readColor(payload);
+                if (color != null) {
+                    // Update the current color along with the event
+                    colorChange = new ColorChange(color, ZonedDateTime.now(), "cloudevent:" + source);
+                }
+            } catch (Exception e) {
+                // Log error but don't fail the event processing
+                logger.warn("Failed to process color change from CloudEvent {}: {}", eventId, e.getMessage());
+            }
+        }
+        return new CloudEventIngestService.Item(record, colorChange);
+    }
+
+    // Defaults for missing attributes
+    private static String idOf(CloudEvent event) {
+        return event.getId() != null ? event.getId() : "unknown-" + System.currentTimeMillis();
+    }
+
+    private static String sourceOf(CloudEvent event) {
+        return event.getSource() != null ? event.getSource().toString() : "unknown-source";
+    }
+
+    // Lets broker retries of events that were not queued through the duplicate filter
+    private void forget(List<CloudEventIngestService.Item> items) {
+        for (CloudEventIngestService.Item item : items) {
+            duplicateEventFilter.forget(item.record().getSource(), item.record().getEventId());
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BatchResult(int index, String id, int status, String error) {
+    }
+
     // Debug endpoint to see all headers
     @PostMapping("/debug")
     public ResponseEntity<Map<String, Object>> debugCloudEvent(
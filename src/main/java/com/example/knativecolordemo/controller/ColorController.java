@@ -1,17 +1,28 @@
 package com.example.knativecolordemo.controller;
 
 import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorStats;
+import com.example.knativecolordemo.model.ColorTimeline;
+import com.example.knativecolordemo.model.CursorPage;
+import com.example.knativecolordemo.model.DeltaPage;
+import com.example.knativecolordemo.service.ColorEventOutbox;
 import com.example.knativecolordemo.service.ColorService;
+import com.example.knativecolordemo.service.ColorStatsAggregator;
 import com.example.knativecolordemo.service.EventPublisherService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.List;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 
 @RestController
@@ -22,6 +33,8 @@ public class ColorController {
 
     private static final Logger logger = LoggerFactory.getLogger(EventPublisherService.class);
 
+    private static final int MAX_PAGE_SIZE = 500;
+
 
     @Autowired
     private ColorService colorService;
@@ -29,6 +42,12 @@ public class ColorController {
     @Autowired
     private EventPublisherService eventPublisherService;
 
+    @Autowired
+    private ColorEventOutbox colorEventOutbox;
+
+    @Autowired
+    private ColorStatsAggregator colorStatsAggregator;
+
     @GetMapping("/current")
     public ResponseEntity<ColorChange> getCurrentColor() {
         ColorChange currentColor = colorService.getCurrentColor();
@@ -36,9 +55,56 @@ public class ColorController {
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<ColorChange>> getColorHistory() {
-        List<ColorChange> history = colorService.getColorHistory();
-        return ResponseEntity.ok(history);
+    public ResponseEntity<CursorPage<ColorChange>> getColorHistory(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            WebRequest webRequest) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE || (before != null && after != null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Read before querying: a change committed meanwhile can only make the ETag stale, never the page.
+        // Unchanged polls end here with a 304, without touching the database
+        if (webRequest.checkNotModified(Long.toString(colorService.getVersion()))) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                    .body(colorService.getColorHistory(limit, before, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Delta mode: changes published after the given version, served from memory
+    @GetMapping(value = "/history", params = {"since", "!bucket"})
+    public ResponseEntity<DeltaPage<ColorChange>> getColorHistorySince(
+            @RequestParam long since,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(colorService.getColorChangesSince(since, limit));
+    }
+
+    // Downsampled history: from defaults to one hour before to, to defaults to now
+    @GetMapping(value = "/history", params = "bucket")
+    public ResponseEntity<ColorTimeline> getColorTimeline(
+            @RequestParam String bucket,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        try {
+            ZonedDateTime end = to != null ? ZonedDateTime.parse(to) : ZonedDateTime.now();
+            ZonedDateTime start = from != null ? ZonedDateTime.parse(from) : end.minusHours(1);
+            return ResponseEntity.ok(colorService.getColorTimeline(start, end, Duration.parse(bucket)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<ColorStats> getColorStats() {
+        return ResponseEntity.ok(colorStatsAggregator.snapshot());
     }
 
     @PostMapping("/set")
@@ -60,12 +126,16 @@ public class ColorController {
                     colorChange = colorService.setColor(color, source);
                     break;
                 case "true":
-                    // Publishes as event into the broker
-                    eventPublisherService.publishManualColorChangeEvent(colorChange.getColor(), colorChange.getTimestamp(), colorChange.getSource());
+                    // Publishes as event into the broker, via the outbox so broker latency stays off the request
+                    colorEventOutbox.append(eventPublisherService.createManualColorChangeEvent(
+                        colorChange.getColor(), colorChange.getTimestamp(), colorChange.getSource()));
             }
             return ResponseEntity.ok(colorChange);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            logger.error("Failed to write color change to the outbox", e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
 
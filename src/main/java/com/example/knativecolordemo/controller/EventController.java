@@ -1,24 +1,54 @@
 package com.example.knativecolordemo.controller;
 
 import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.CursorPage;
+import com.example.knativecolordemo.model.DeltaPage;
 import com.example.knativecolordemo.service.CloudEventService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/events")
 @CrossOrigin(origins = "*")
 public class EventController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private CloudEventService cloudEventService;
 
     @GetMapping
-    public ResponseEntity<List<CloudEventRecord>> getAllEvents() {
-        List<CloudEventRecord> events = cloudEventService.getAllEvents();
-        return ResponseEntity.ok(events);
+    public ResponseEntity<CursorPage<CloudEventRecord>> getEvents(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            WebRequest webRequest) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE || (before != null && after != null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Unchanged polls end here with a 304, without touching the store
+        if (webRequest.checkNotModified(Long.toString(cloudEventService.getVersion()))) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                    .body(cloudEventService.getEvents(limit, before, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Delta mode: events published after the given version, served from memory
+    @GetMapping(params = "since")
+    public ResponseEntity<DeltaPage<CloudEventRecord>> getEventsSince(
+            @RequestParam long since,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(cloudEventService.getEventsSince(since, limit));
     }
 }
@@ -0,0 +1,34 @@
+package com.example.knativecolordemo.controller;
+
+import com.example.knativecolordemo.service.SnapshotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Exports the full history, including every stored CloudEvent payload, so it is only mapped when
+ * {@code snapshot.export.enabled} is set on the replicas that peers seed from.
+ */
+@RestController
+@RequestMapping("/api/snapshot")
+@ConditionalOnProperty(name = "snapshot.export.enabled", havingValue = "true")
+public class SnapshotController {
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    // Streamed as it is read, so exporting a large history does not buffer it in memory
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportSnapshot() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"color-demo.snapshot\"")
+                .body(out -> snapshotService.export(out));
+    }
+}
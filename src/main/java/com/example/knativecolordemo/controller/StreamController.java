@@ -0,0 +1,27 @@
+package com.example.knativecolordemo.controller;
+
+import com.example.knativecolordemo.service.ColorService;
+import com.example.knativecolordemo.service.EventBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/stream")
+@CrossOrigin(origins = "*")
+public class StreamController {
+
+    @Autowired
+    private EventBroadcaster eventBroadcaster;
+
+    @Autowired
+    private ColorService colorService;
+
+    // Pushes "current" once, then "color" and "cloudevent" as they are recorded. The current color is read
+    // after the subscriber is registered, so a change recorded in between still reaches it
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return eventBroadcaster.subscribe(EventBroadcaster.CURRENT_EVENT, colorService::getCurrentColor);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.knativecolordemo.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking async appender that counts the events it drops because its queue is full.
+ *
+ * Configure with {@code neverBlock=true} and {@code discardingThreshold=0} so that a full queue is the only
+ * reason to drop; the count is approximate when the queue fills between the check and the offer.
+ */
+public class CountingAsyncAppender extends AsyncAppender {
+
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (getRemainingCapacity() == 0) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+        super.append(event);
+    }
+}
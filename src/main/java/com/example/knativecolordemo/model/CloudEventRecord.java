@@ -4,11 +4,20 @@ import jakarta.persistence.*;
 import java.time.ZonedDateTime;
 
 @Entity
-@Table(name = "cloud_events")
+@Table(name = "cloud_events", indexes = {
+    @Index(name = "idx_cloud_events_timestamp", columnList = "timestamp, id")
+}, uniqueConstraints = {
+    // Brokers deliver at least once; a redelivered (id, source) must not be stored twice
+    @UniqueConstraint(name = CloudEventRecord.UNIQUE_EVENT_CONSTRAINT, columnNames = {"event_id", "source"})
+})
 public class CloudEventRecord {
 
+    public static final String UNIQUE_EVENT_CONSTRAINT = "uk_cloud_events_event_id_source";
+
+    // Pooled sequence ids let Hibernate batch inserts, which IDENTITY columns prevent
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cloud_events_seq")
+    @SequenceGenerator(name = "cloud_events_seq", sequenceName = "cloud_events_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -4,11 +4,14 @@ import jakarta.persistence.*;
 import java.time.ZonedDateTime;
 
 @Entity
-@Table(name = "color_changes")
+@Table(name = "color_changes", indexes = {
+    @Index(name = "idx_color_changes_timestamp", columnList = "timestamp, id")
+})
 public class ColorChange {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "color_changes_seq")
+    @SequenceGenerator(name = "color_changes_seq", sequenceName = "color_changes_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
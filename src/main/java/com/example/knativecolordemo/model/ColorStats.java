@@ -0,0 +1,62 @@
+package com.example.knativecolordemo.model;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+public class ColorStats {
+
+    private final long totalChanges;
+
+    // Null until the first color change has been recorded
+    private final ColorChange.Color currentColor;
+    private final ZonedDateTime currentSince;
+    private final ZonedDateTime firstChange;
+
+    // Keyed by color in enum order; dwell of the current color includes the time since it was set
+    private final Map<ColorChange.Color, ColorTotals> colors;
+
+    private final Map<String, Long> sources;
+
+    private final long changesLastMinute;
+
+    public ColorStats(long totalChanges, ColorChange.Color currentColor, ZonedDateTime currentSince,
+                      ZonedDateTime firstChange, Map<ColorChange.Color, ColorTotals> colors,
+                      Map<String, Long> sources, long changesLastMinute) {
+        this.totalChanges = totalChanges;
+        this.currentColor = currentColor;
+        this.currentSince = currentSince;
+        this.firstChange = firstChange;
+        this.colors = colors;
+        this.sources = sources;
+        this.changesLastMinute = changesLastMinute;
+    }
+
+    public long getTotalChanges() { return totalChanges; }
+
+    public ColorChange.Color getCurrentColor() { return currentColor; }
+
+    public ZonedDateTime getCurrentSince() { return currentSince; }
+
+    public ZonedDateTime getFirstChange() { return firstChange; }
+
+    public Map<ColorChange.Color, ColorTotals> getColors() { return colors; }
+
+    public Map<String, Long> getSources() { return sources; }
+
+    public long getChangesLastMinute() { return changesLastMinute; }
+
+    public static class ColorTotals {
+
+        private final long changes;
+        private final long dwellMillis;
+
+        public ColorTotals(long changes, long dwellMillis) {
+            this.changes = changes;
+            this.dwellMillis = dwellMillis;
+        }
+
+        public long getChanges() { return changes; }
+
+        public long getDwellMillis() { return dwellMillis; }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.knativecolordemo.model;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+public class ColorTimeline {
+
+    private final ZonedDateTime from;
+    private final ZonedDateTime to;
+    private final long bucketMillis;
+    private final List<Bucket> buckets;
+
+    public ColorTimeline(ZonedDateTime from, ZonedDateTime to, long bucketMillis, List<Bucket> buckets) {
+        this.from = from;
+        this.to = to;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    public ZonedDateTime getFrom() { return from; }
+
+    public ZonedDateTime getTo() { return to; }
+
+    public long getBucketMillis() { return bucketMillis; }
+
+    public List<Bucket> getBuckets() { return buckets; }
+
+    public static class Bucket {
+
+        private final ZonedDateTime start;
+
+        // Color active for most of the bucket; null when no color had been set yet or the bucket is in the future
+        private final ColorChange.Color color;
+
+        // Changes to a different color than the one before; changes counts every recorded change
+        private final int transitions;
+        private final int changes;
+
+        public Bucket(ZonedDateTime start, ColorChange.Color color, int transitions, int changes) {
+            this.start = start;
+            this.color = color;
+            this.transitions = transitions;
+            this.changes = changes;
+        }
+
+        public ZonedDateTime getStart() { return start; }
+
+        public ColorChange.Color getColor() { return color; }
+
+        public int getTransitions() { return transitions; }
+
+        public int getChanges() { return changes; }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.knativecolordemo.model;
+
+import java.util.List;
+
+public class CursorPage<T> {
+
+    private final List<T> items;
+
+    // Pass as "before" to fetch the next (older) page; null when there is nothing older
+    private final String nextCursor;
+
+    // Pass as "after" to fetch rows newer than this page
+    private final String prevCursor;
+
+    public CursorPage(List<T> items, String nextCursor, String prevCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public String getPrevCursor() { return prevCursor; }
+}
@@ -0,0 +1,27 @@
+package com.example.knativecolordemo.model;
+
+import java.util.List;
+
+public class DeltaPage<T> {
+
+    // Rows published after the requested version, oldest first
+    private final List<T> items;
+
+    // Pass as "since" on the next poll
+    private final long version;
+
+    // The requested version is too old or from before a restart; reload the first page instead
+    private final boolean reset;
+
+    public DeltaPage(List<T> items, long version, boolean reset) {
+        this.items = items;
+        this.version = version;
+        this.reset = reset;
+    }
+
+    public List<T> getItems() { return items; }
+
+    public long getVersion() { return version; }
+
+    public boolean isReset() { return reset; }
+}
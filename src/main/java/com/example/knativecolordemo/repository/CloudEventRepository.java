@@ -1,15 +1,41 @@
 package com.example.knativecolordemo.repository;
 
 import com.example.knativecolordemo.model.CloudEventRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 @Repository
 public interface CloudEventRepository extends JpaRepository<CloudEventRecord, Long> {
 
-    @Query("SELECT c FROM CloudEventRecord c ORDER BY c.timestamp DESC")
-    List<CloudEventRecord> findAllOrderByTimestampDesc();
+    @Query("SELECT c FROM CloudEventRecord c ORDER BY c.timestamp DESC, c.id DESC")
+    List<CloudEventRecord> findNewest(Pageable page);
+
+    // Rows strictly older than (timestamp, id), newest first
+    @Query("SELECT c FROM CloudEventRecord c WHERE c.timestamp <= :timestamp AND (c.timestamp < :timestamp OR c.id < :id) " +
+           "ORDER BY c.timestamp DESC, c.id DESC")
+    List<CloudEventRecord> findBefore(@Param("timestamp") ZonedDateTime timestamp, @Param("id") long id, Pageable page);
+
+    // Rows strictly newer than (timestamp, id), oldest first
+    @Query("SELECT c FROM CloudEventRecord c WHERE c.timestamp >= :timestamp AND (c.timestamp > :timestamp OR c.id > :id) " +
+           "ORDER BY c.timestamp ASC, c.id ASC")
+    List<CloudEventRecord> findAfter(@Param("timestamp") ZonedDateTime timestamp, @Param("id") long id, Pageable page);
+
+    // Retention: oldest rows first, ids only
+    @Query("SELECT c.id FROM CloudEventRecord c ORDER BY c.timestamp ASC, c.id ASC")
+    List<Long> findOldestIds(Pageable page);
+
+    @Query("SELECT c.id FROM CloudEventRecord c WHERE c.timestamp < :cutoff ORDER BY c.timestamp ASC, c.id ASC")
+    List<Long> findIdsOlderThan(@Param("cutoff") ZonedDateTime cutoff, Pageable page);
+
+    @Query("SELECT COALESCE(SUM(LENGTH(c.data)), 0) FROM CloudEventRecord c")
+    long sumPayloadLength();
+
+    @Query("SELECT COALESCE(SUM(LENGTH(c.data)), 0) FROM CloudEventRecord c WHERE c.id IN :ids")
+    long sumPayloadLength(@Param("ids") List<Long> ids);
 }
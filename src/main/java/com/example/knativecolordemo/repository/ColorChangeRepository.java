@@ -1,19 +1,66 @@
 package com.example.knativecolordemo.repository;
 
 import com.example.knativecolordemo.model.ColorChange;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ColorChangeRepository extends JpaRepository<ColorChange, Long> {
 
-    @Query("SELECT c FROM ColorChange c ORDER BY c.timestamp DESC")
-    List<ColorChange> findAllOrderByTimestampDesc();
+    @Query("SELECT c FROM ColorChange c ORDER BY c.timestamp DESC, c.id DESC")
+    List<ColorChange> findNewest(Pageable page);
 
-    @Query("SELECT c FROM ColorChange c ORDER BY c.timestamp DESC LIMIT 1")
+    @Query("SELECT c FROM ColorChange c ORDER BY c.timestamp ASC, c.id ASC")
+    List<ColorChange> findOldest(Pageable page);
+
+    // Rows strictly older than (timestamp, id), newest first
+    @Query("SELECT c FROM ColorChange c WHERE c.timestamp <= :timestamp AND (c.timestamp < :timestamp OR c.id < :id) " +
+           "ORDER BY c.timestamp DESC, c.id DESC")
+    List<ColorChange> findBefore(@Param("timestamp") ZonedDateTime timestamp, @Param("id") long id, Pageable page);
+
+    // Rows strictly newer than (timestamp, id), oldest first
+    @Query("SELECT c FROM ColorChange c WHERE c.timestamp >= :timestamp AND (c.timestamp > :timestamp OR c.id > :id) " +
+           "ORDER BY c.timestamp ASC, c.id ASC")
+    List<ColorChange> findAfter(@Param("timestamp") ZonedDateTime timestamp, @Param("id") long id, Pageable page);
+
+    @Query("SELECT c FROM ColorChange c ORDER BY c.timestamp DESC, c.id DESC LIMIT 1")
     Optional<ColorChange> findLatest();
+
+    @Query("SELECT c FROM ColorChange c WHERE c.timestamp < :timestamp ORDER BY c.timestamp DESC, c.id DESC LIMIT 1")
+    Optional<ColorChange> findLatestBefore(@Param("timestamp") ZonedDateTime timestamp);
+
+    // Downsampling: index range scan over [from, to), color and timestamp only; consume inside a transaction
+    @Query("SELECT c.color AS color, c.timestamp AS timestamp FROM ColorChange c " +
+           "WHERE c.timestamp >= :from AND c.timestamp < :to ORDER BY c.timestamp ASC, c.id ASC")
+    Stream<ColorPoint> streamRange(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to);
+
+    @Query("SELECT c.id FROM ColorChange c ORDER BY c.timestamp DESC, c.id DESC LIMIT 1")
+    Optional<Long> findLatestId();
+
+    // Retention: oldest rows first, ids only, skipping the row with id keep
+    @Query("SELECT c.id FROM ColorChange c WHERE c.id <> :keep ORDER BY c.timestamp ASC, c.id ASC")
+    List<Long> findOldestIds(@Param("keep") long keep, Pageable page);
+
+    @Query("SELECT c.id FROM ColorChange c WHERE c.timestamp < :cutoff AND c.id <> :keep ORDER BY c.timestamp ASC, c.id ASC")
+    List<Long> findIdsOlderThan(@Param("cutoff") ZonedDateTime cutoff, @Param("keep") long keep, Pageable page);
+
+    @Query("SELECT COALESCE(SUM(LENGTH(c.source)), 0) FROM ColorChange c")
+    long sumPayloadLength();
+
+    @Query("SELECT COALESCE(SUM(LENGTH(c.source)), 0) FROM ColorChange c WHERE c.id IN :ids")
+    long sumPayloadLength(@Param("ids") List<Long> ids);
+
+    interface ColorPoint {
+        ColorChange.Color getColor();
+
+        ZonedDateTime getTimestamp();
+    }
 }
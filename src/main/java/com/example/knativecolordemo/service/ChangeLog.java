@@ -0,0 +1,86 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.DeltaPage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Version counter plus a ring of the most recently published rows, for conditional GETs and delta polls.
+ *
+ * The version starts at the boot time in microseconds, so a version handed out before a restart is
+ * older than any issued after it and its delta request falls back to a reset.
+ */
+final class ChangeLog<T> {
+
+    private final Object[] ring;
+
+    // Guards ring and floor; version is also readable without it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile long version;
+
+    // Oldest version a delta can start from
+    private long floor;
+
+    ChangeLog(int capacity) {
+        this.ring = new Object[capacity];
+        this.version = System.currentTimeMillis() * 1000;
+        this.floor = version;
+    }
+
+    long version() {
+        return version;
+    }
+
+    void append(List<T> committed) {
+        lock.lock();
+        try {
+            long next = version;
+            for (T item : committed) {
+                next++;
+                ring[(int) (next % ring.length)] = item;
+            }
+            version = next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every client to reload, for when rows changed other than by appending.
+     */
+    void reset() {
+        lock.lock();
+        try {
+            version++;
+            floor = version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    DeltaPage<T> since(long since, int limit) {
+        lock.lock();
+        try {
+            long current = version;
+            if (since == current) {
+                return new DeltaPage<>(Collections.emptyList(), current, false);
+            }
+            if (since > current || since < Math.max(floor, current - ring.length)) {
+                return new DeltaPage<>(Collections.emptyList(), current, true);
+            }
+            long last = Math.min(current, since + limit);
+            List<T> items = new ArrayList<>((int) (last - since));
+            for (long v = since + 1; v <= last; v++) {
+                items.add((T) ring[(int) (v % ring.length)]);
+            }
+            return new DeltaPage<>(items, last, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.knativecolordemo.service;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Enforces a {@link RetentionPolicy} by deleting the oldest rows of a table in small chunks.
+ *
+ * Each chunk is its own short transaction, so ingestion keeps running while a large backlog is trimmed.
+ * Sizes are approximate: payload characters plus a fixed per-row overhead for the entity and its indexes.
+ * Payload characters come from a running total the table keeps, so a run does not scan the whole table.
+ */
+public final class ChunkedRetention {
+
+    static final long ROW_OVERHEAD_BYTES = 128;
+
+    /**
+     * Row-level operations on the table being trimmed, oldest first by (timestamp, id).
+     */
+    public interface Table {
+
+        long count();
+
+        /**
+         * Payload characters across all rows, kept as a running total.
+         */
+        long payloadChars();
+
+        List<Long> oldestIds(int limit);
+
+        List<Long> idsOlderThan(ZonedDateTime cutoff, int limit);
+
+        /**
+         * Deletes the rows and takes their payload out of the running total.
+         *
+         * @return the payload characters the rows held
+         */
+        long delete(List<Long> ids);
+    }
+
+    public record Result(long deleted, long rows, long bytes) {
+    }
+
+    private ChunkedRetention() {
+    }
+
+    public static Result enforce(Table table, RetentionPolicy policy, int chunkSize) {
+        long deleted = 0;
+
+        if (policy.getMaxAge() != null && !policy.getMaxAge().isZero()) {
+            ZonedDateTime cutoff = ZonedDateTime.now().minus(policy.getMaxAge());
+            List<Long> ids;
+            do {
+                ids = table.idsOlderThan(cutoff, chunkSize);
+                if (!ids.isEmpty()) {
+                    table.delete(ids);
+                    deleted += ids.size();
+                }
+            } while (ids.size() == chunkSize);
+        }
+
+        long rows = table.count();
+        if (policy.getMaxRows() > 0) {
+            while (rows > policy.getMaxRows()) {
+                List<Long> ids = table.oldestIds((int) Math.min(chunkSize, rows - policy.getMaxRows()));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                table.delete(ids);
+                deleted += ids.size();
+                rows -= ids.size();
+            }
+        }
+
+        long bytes = rows * ROW_OVERHEAD_BYTES + table.payloadChars();
+        if (policy.getMaxBytes() > 0) {
+            while (bytes > policy.getMaxBytes()) {
+                List<Long> ids = table.oldestIds(chunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long chunkBytes = ids.size() * ROW_OVERHEAD_BYTES + table.delete(ids);
+                deleted += ids.size();
+                rows -= ids.size();
+                bytes -= chunkBytes;
+            }
+        }
+
+        return new Result(deleted, rows, bytes);
+    }
+}
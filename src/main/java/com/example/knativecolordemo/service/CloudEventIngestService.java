@@ -0,0 +1,289 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group-commit ingestion stage for the CloudEvent sink.
+ *
+ * Accepted events are queued and a single writer persists them in batches, one transaction per batch,
+ * so a burst costs one H2 round trip per batch rather than per event. Events submitted together are
+ * queued as one unit that is never split across write batches.
+ */
+@Service
+public class CloudEventIngestService {
+
+    public enum AckMode {
+        // Acknowledge once the batch holding the event has committed
+        COMMIT,
+        // Acknowledge as soon as the event is queued; a crash loses whatever is still queued, and an event
+        // that then fails to persist is only logged since the broker will not redeliver it
+        ENQUEUE
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudEventIngestService.class);
+
+    @Autowired
+    private CloudEventService cloudEventService;
+
+    @Autowired
+    private ColorService colorService;
+
+    @Autowired
+    private DuplicateEventFilter duplicateEventFilter;
+
+    @Autowired
+    private CloudEventMetrics cloudEventMetrics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cloudevents.ingest.ack-mode:COMMIT}")
+    private AckMode ackMode;
+
+    @Value("${cloudevents.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${cloudevents.ingest.batch-size:200}")
+    private int batchSize;
+
+    // Units of one or more events; queueCapacity bounds the events they hold, counted in queuedEvents
+    private final BlockingQueue<List<PendingEvent>> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    // Held while checking running and enqueueing, and by stop() to clear it, so no unit is queued after the
+    // writer's last look at the queue
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        writer = new Thread(this::runWriter, "cloudevent-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        submitLock.lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.unlock();
+        }
+        // The writer flushes whatever is still queued before exiting
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        // Only left if the writer did not finish in time; fail them rather than leave requests waiting
+        RejectedExecutionException shutdown = new RejectedExecutionException("CloudEvent ingest stopped");
+        List<PendingEvent> unit;
+        while ((unit = queue.poll()) != null) {
+            queuedEvents.addAndGet(-unit.size());
+            unit.forEach(pending -> pending.committed().completeExceptionally(shutdown));
+        }
+    }
+
+    /**
+     * Queues an event, plus the color change it carries if any, for persistence.
+     *
+     * @return a future completed according to the configured {@link AckMode}
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public CompletableFuture<Void> submit(CloudEventRecord record, ColorChange colorChange) {
+        return submitAll(List.of(new Item(record, colorChange))).get(0);
+    }
+
+    /**
+     * Queues events as one unit: they are accepted or rejected together and written in the same transaction.
+     * If that transaction fails, each event is retried and completed on its own.
+     *
+     * @return one future per item, in order, completed according to the configured {@link AckMode}
+     * @throws RejectedExecutionException if the queue cannot take all of them
+     */
+    public List<CompletableFuture<Void>> submitAll(List<Item> items) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+
+        long now = System.nanoTime();
+        List<PendingEvent> unit = new ArrayList<>(items.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(items.size());
+        for (Item item : items) {
+            PendingEvent pending = new PendingEvent(item.record(), item.colorChange(), now, new CompletableFuture<>());
+            unit.add(pending);
+            futures.add(ackMode == AckMode.ENQUEUE ? CompletableFuture.completedFuture(null) : pending.committed());
+        }
+
+        submitLock.lock();
+        try {
+            if (!running) {
+                throw new RejectedExecutionException("CloudEvent ingest is stopped");
+            }
+            if (queuedEvents.addAndGet(items.size()) > queueCapacity) {
+                queuedEvents.addAndGet(-items.size());
+                throw new RejectedExecutionException("CloudEvent ingest queue is full");
+            }
+            queue.add(unit);
+        } finally {
+            submitLock.unlock();
+        }
+        return futures;
+    }
+
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    public int getQueueDepth() {
+        return queuedEvents.get();
+    }
+
+    private void runWriter() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                List<PendingEvent> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.addAll(first);
+                // A unit larger than the remaining room still goes whole into this batch
+                List<PendingEvent> next;
+                while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                    batch.addAll(next);
+                }
+                queuedEvents.addAndGet(-batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Whatever was not completed yet would leave its request waiting for the async timeout
+                logger.error("CloudEvent ingest writer failed", e);
+                batch.forEach(pending -> pending.committed().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingEvent> batch) {
+        List<CloudEventRecord> records = new ArrayList<>(batch.size());
+        List<ColorChange> colorChanges = new ArrayList<>();
+        for (PendingEvent pending : batch) {
+            records.add(pending.record());
+            if (pending.colorChange() != null) {
+                colorChanges.add(pending.colorChange());
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                cloudEventService.saveAll(records);
+                colorService.saveAll(colorChanges);
+            });
+        } catch (RuntimeException e) {
+            // Retry one by one so a redelivery older than the duplicate cache, or a single bad row, only affects its own event
+            if (!isDuplicateEvent(e)) {
+                logger.warn("Failed to persist batch of {} CloudEvents, retrying individually: {}", batch.size(), e.getMessage());
+            }
+            writeIndividually(batch);
+            return;
+        }
+
+        cloudEventService.publish(records);
+        colorService.publish(colorChanges);
+        batch.forEach(this::committed);
+    }
+
+    private void writeIndividually(List<PendingEvent> batch) {
+        for (PendingEvent pending : batch) {
+            CloudEventRecord record = pending.record();
+            ColorChange colorChange = pending.colorChange();
+            // Ids assigned during the failed batch were rolled back with it
+            record.setId(null);
+            if (colorChange != null) {
+                colorChange.setId(null);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    cloudEventService.saveAll(List.of(record));
+                    if (colorChange != null) {
+                        colorService.saveAll(List.of(colorChange));
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (isDuplicateEvent(e)) {
+                    // Already stored by an earlier delivery: acknowledge without applying it again
+                    duplicateEventFilter.recordDatabaseDuplicate();
+                    pending.committed().complete(null);
+                    continue;
+                }
+                logger.error("Failed to persist CloudEvent {}{}", record.getEventId(),
+                        ackMode == AckMode.ENQUEUE ? " (already acknowledged, event lost)" : "", e);
+                pending.committed().completeExceptionally(e);
+                continue;
+            }
+            cloudEventService.publish(List.of(record));
+            if (colorChange != null) {
+                colorService.publish(List.of(colorChange));
+            }
+            committed(pending);
+        }
+    }
+
+    /**
+     * True only when the unique (event_id, source) index rejected the row. Other integrity violations, such as
+     * a value too long for its column, fail the event so the broker sees the error instead of an ack.
+     */
+    static boolean isDuplicateEvent(Throwable e) {
+        String constraint = CloudEventRecord.UNIQUE_EVENT_CONSTRAINT.toUpperCase(Locale.ROOT);
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                // The dialect extracts the index name; fall back to the driver message when it cannot
+                String name = violation.getConstraintName() != null ? violation.getConstraintName()
+                        : violation.getSQLException().getMessage();
+                return name != null && name.toUpperCase(Locale.ROOT).contains(constraint);
+            }
+        }
+        return false;
+    }
+
+    private void committed(PendingEvent pending) {
+        cloudEventMetrics.recordPersisted(pending.record().getEventType(), pending.record().getSource(), pending.submittedNanos());
+        pending.committed().complete(null);
+    }
+
+    public record Item(CloudEventRecord record, ColorChange colorChange) {
+    }
+
+    private record PendingEvent(CloudEventRecord record, ColorChange colorChange, long submittedNanos,
+                                CompletableFuture<Void> committed) {
+    }
+}
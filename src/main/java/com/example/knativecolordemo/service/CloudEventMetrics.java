@@ -0,0 +1,116 @@
+package com.example.knativecolordemo.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for received and published CloudEvents, tagged by event type and source.
+ *
+ * Timers are built once per tag combination and cached, so recording costs a map lookup and a histogram
+ * update. Types and sources come from senders, so each tag keeps at most {@code metrics.cloudevents.max-tag-values}
+ * distinct values; later ones are reported as {@code other}.
+ *
+ * The events app has a copy with the same name, publish timer and tag cap; change both together.
+ */
+@Service
+public class CloudEventMetrics {
+
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxTagValues;
+
+    private final Set<String> types = ConcurrentHashMap.newKeySet();
+    private final Set<String> sources = ConcurrentHashMap.newKeySet();
+
+    private final Map<Key, Timer> lagTimers = new ConcurrentHashMap<>();
+    private final Map<Key, Timer> persistTimers = new ConcurrentHashMap<>();
+    private final Map<Key, Timer> publishTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CloudEventMetrics(MeterRegistry meterRegistry,
+                             @Value("${metrics.cloudevents.max-tag-values:100}") int maxTagValues) {
+        this.meterRegistry = meterRegistry;
+        this.maxTagValues = maxTagValues;
+    }
+
+    /**
+     * Records how long ago the sender stamped the event; events without a time are skipped.
+     */
+    public void recordLag(String type, String source, OffsetDateTime eventTime) {
+        if (eventTime == null) {
+            return;
+        }
+        // Clock skew between sender and sink can make the difference negative
+        long lagMillis = Math.max(0, System.currentTimeMillis() - eventTime.toInstant().toEpochMilli());
+        lagTimers.computeIfAbsent(key(type, source, null), key -> timer("cloudevents.sink.lag",
+                "Time from the CloudEvent time attribute to receipt by the sink", key,
+                Duration.ofMillis(1), Duration.ofMinutes(5)))
+                .record(lagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the time from {@code startNanos} until the event was committed.
+     */
+    public void recordPersisted(String type, String source, long startNanos) {
+        persistTimers.computeIfAbsent(key(type, source, null), key -> timer("cloudevents.persist.latency",
+                "Time from accepting a CloudEvent until it is stored", key,
+                Duration.ofMillis(1), Duration.ofSeconds(30)))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a broker round trip; {@code status} is the HTTP status code, {@code error} or {@code rejected}.
+     */
+    public void recordPublish(String type, String source, String status, long startNanos) {
+        publishTimers.computeIfAbsent(key(type, source, status), key -> timer("broker.publish.latency",
+                "Broker round trip for published CloudEvents", key,
+                Duration.ofMillis(1), Duration.ofSeconds(30)))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String description, Key key, Duration min, Duration max) {
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .tag("type", key.type())
+                .tag("source", key.source())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(min)
+                .maximumExpectedValue(max);
+        if (key.status() != null) {
+            builder.tag("status", key.status());
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private Key key(String type, String source, String status) {
+        return new Key(bounded(types, type), bounded(sources, source), status);
+    }
+
+    private String bounded(Set<String> seen, String value) {
+        if (value == null) {
+            return OTHER;
+        }
+        if (seen.contains(value)) {
+            return value;
+        }
+        if (seen.size() < maxTagValues) {
+            seen.add(value);
+            return value;
+        }
+        return OTHER;
+    }
+
+    private record Key(String type, String source, String status) {
+    }
+}
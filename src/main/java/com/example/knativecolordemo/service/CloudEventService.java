@@ -1,7 +1,8 @@
 package com.example.knativecolordemo.service;
 
 import com.example.knativecolordemo.model.CloudEventRecord;
-import com.example.knativecolordemo.repository.CloudEventRepository;
+import com.example.knativecolordemo.model.CursorPage;
+import com.example.knativecolordemo.model.DeltaPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -11,16 +12,75 @@ import java.util.List;
 @Service
 public class CloudEventService {
 
+    // Published events kept for since= polls; older versions get a reset
+    private static final int DELTA_CAPACITY = 1000;
+
+    @Autowired
+    private CloudEventStore cloudEventStore;
+
+    @Autowired
+    private EventBroadcaster eventBroadcaster;
+
     @Autowired
-    private CloudEventRepository cloudEventRepository;
+    private CloudEventMetrics cloudEventMetrics;
+
+    private final ChangeLog<CloudEventRecord> changes = new ChangeLog<>(DELTA_CAPACITY);
 
     public CloudEventRecord saveCloudEvent(String eventId, String eventType, String source,
                                          ZonedDateTime timestamp, String data, String subject) {
+        long start = System.nanoTime();
         CloudEventRecord record = new CloudEventRecord(eventId, eventType, source, timestamp, data, subject);
-        return cloudEventRepository.save(record);
+        CloudEventRecord saved = cloudEventStore.saveAll(List.of(record)).get(0);
+        cloudEventMetrics.recordPersisted(eventType, source, start);
+        publish(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * Persists a batch, inside the caller's transaction when the store is JPA. Call {@link #publish} once it has committed.
+     */
+    public List<CloudEventRecord> saveAll(List<CloudEventRecord> records) {
+        return cloudEventStore.saveAll(records);
+    }
+
+    public void publish(List<CloudEventRecord> committed) {
+        for (CloudEventRecord record : committed) {
+            eventBroadcaster.publish(EventBroadcaster.CLOUD_EVENT, record);
+        }
+        changes.append(committed);
+    }
+
+    /**
+     * Invalidates versions handed out so far, for when rows were removed; clients reload their event pages.
+     */
+    public void resetVersion() {
+        changes.reset();
+    }
+
+    /**
+     * Increases with every published event; usable as an ETag for event reads.
+     */
+    public long getVersion() {
+        return changes.version();
+    }
+
+    public DeltaPage<CloudEventRecord> getEventsSince(long since, int limit) {
+        return changes.since(since, limit);
     }
 
-    public List<CloudEventRecord> getAllEvents() {
-        return cloudEventRepository.findAllOrderByTimestampDesc();
+    public CursorPage<CloudEventRecord> getEvents(int limit, String before, String after) {
+        if (after != null) {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            List<CloudEventRecord> rows = cloudEventStore.findAfter(cursor.getTimestamp(), cursor.getId(), limit);
+            return KeysetCursor.toPage(rows, limit, true, after, CloudEventRecord::getTimestamp, CloudEventRecord::getId);
+        }
+        List<CloudEventRecord> rows;
+        if (before != null) {
+            KeysetCursor cursor = KeysetCursor.decode(before);
+            rows = cloudEventStore.findBefore(cursor.getTimestamp(), cursor.getId(), limit);
+        } else {
+            rows = cloudEventStore.findNewest(limit);
+        }
+        return KeysetCursor.toPage(rows, limit, false, null, CloudEventRecord::getTimestamp, CloudEventRecord::getId);
     }
 }
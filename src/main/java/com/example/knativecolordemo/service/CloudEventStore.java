@@ -0,0 +1,53 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for received CloudEvents, selected with {@code cloudevents.store}.
+ *
+ * Pages are keyset queries over (timestamp, id): {@code findNewest} and {@code findBefore} return
+ * newest first, {@code findAfter} oldest first.
+ */
+public interface CloudEventStore {
+
+    /**
+     * Stores the records and assigns their ids.
+     */
+    List<CloudEventRecord> saveAll(List<CloudEventRecord> records);
+
+    List<CloudEventRecord> findNewest(int limit);
+
+    List<CloudEventRecord> findBefore(ZonedDateTime timestamp, long id, int limit);
+
+    List<CloudEventRecord> findAfter(ZonedDateTime timestamp, long id, int limit);
+
+    /**
+     * Streams every stored event, oldest first, without holding the whole table in memory.
+     */
+    void scan(Consumer<CloudEventRecord> consumer);
+
+    /**
+     * Bulk-inserts records that already carry ids, as read from a snapshot, without per-row persistence
+     * overhead. Call {@link #finishLoad()} once all batches are in.
+     */
+    void load(List<CloudEventRecord> records);
+
+    /**
+     * Moves id generation past the highest loaded id.
+     */
+    void finishLoad();
+
+    /**
+     * Removes every event; undoes a snapshot load that failed part way.
+     */
+    void clear();
+
+    /**
+     * Removes the oldest events until the store is within the policy.
+     */
+    ChunkedRetention.Result enforce(RetentionPolicy policy, int chunkSize);
+}
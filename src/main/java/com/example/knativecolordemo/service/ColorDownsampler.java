@@ -0,0 +1,106 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorTimeline;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds an ordered stream of color changes into fixed-width buckets.
+ *
+ * Each bucket accumulates how long every color was active inside it, so memory is
+ * {@code buckets x colors} regardless of how many changes are fed in.
+ */
+final class ColorDownsampler {
+
+    private static final ColorChange.Color[] COLORS = ColorChange.Color.values();
+
+    private final long fromMillis;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    // Indexed by bucket * COLORS.length + color ordinal
+    private final long[] dwell;
+    private final int[] transitions;
+    private final int[] changes;
+
+    private ColorChange.Color color;
+    private long cursor;
+
+    /**
+     * @param initial color in effect at {@code from}, or null if none had been set
+     */
+    ColorDownsampler(long fromMillis, long bucketMillis, int bucketCount, ColorChange.Color initial) {
+        this.fromMillis = fromMillis;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.dwell = new long[bucketCount * COLORS.length];
+        this.transitions = new int[bucketCount];
+        this.changes = new int[bucketCount];
+        this.color = initial;
+        this.cursor = fromMillis;
+    }
+
+    /**
+     * Accepts a change inside the range; changes must arrive in timestamp order.
+     */
+    void accept(ColorChange.Color next, long millis) {
+        advanceTo(millis);
+        int bucket = bucketOf(millis);
+        changes[bucket]++;
+        if (next != color) {
+            transitions[bucket]++;
+        }
+        color = next;
+    }
+
+    /**
+     * @param endMillis where the last color stops counting, usually the earlier of {@code to} and now
+     */
+    ColorTimeline finish(ZonedDateTime from, ZonedDateTime to, long endMillis) {
+        advanceTo(endMillis);
+        List<ColorTimeline.Bucket> buckets = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            buckets.add(new ColorTimeline.Bucket(
+                    Instant.ofEpochMilli(fromMillis + bucket * bucketMillis).atZone(ZoneOffset.UTC),
+                    dominant(bucket), transitions[bucket], changes[bucket]));
+        }
+        return new ColorTimeline(from, to, bucketMillis, buckets);
+    }
+
+    // Credits the time from the cursor up to millis to the current color, split at bucket boundaries
+    private void advanceTo(long millis) {
+        long end = Math.min(millis, fromMillis + bucketCount * bucketMillis);
+        if (color == null) {
+            cursor = Math.max(cursor, end);
+            return;
+        }
+        while (cursor < end) {
+            int bucket = bucketOf(cursor);
+            long bucketEnd = Math.min(end, fromMillis + (bucket + 1) * bucketMillis);
+            dwell[bucket * COLORS.length + color.ordinal()] += bucketEnd - cursor;
+            cursor = bucketEnd;
+        }
+    }
+
+    private ColorChange.Color dominant(int bucket) {
+        ColorChange.Color best = null;
+        long bestDwell = 0;
+        for (ColorChange.Color candidate : COLORS) {
+            long candidateDwell = dwell[bucket * COLORS.length + candidate.ordinal()];
+            if (candidateDwell > bestDwell) {
+                best = candidate;
+                bestDwell = candidateDwell;
+            }
+        }
+        return best;
+    }
+
+    private int bucketOf(long millis) {
+        return (int) Math.min(bucketCount - 1, Math.max(0, (millis - fromMillis) / bucketMillis));
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.knativecolordemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed, append-only outbox for events published to the broker.
+ *
+ * {@link #append} returns once the event is on disk; a background dispatcher delivers records in order,
+ * in batches, retrying with exponential backoff. Records are framed as
+ * {@code [int length][int crc32][structured JSON CloudEvent]} in {@code outbox-<generation>.log};
+ * {@code outbox.offset} records the generation and how far delivery has progressed, so a restart
+ * resumes where it stopped. Once enough delivered bytes pile up the undelivered tail is copied into
+ * the next generation and the old file is removed.
+ *
+ * Events the broker rejects permanently (a 4xx other than 408 and 429) are not retried: they are appended to
+ * {@code dead-letter.jsonl} as structured JSON, counted in {@code outbox.dead.lettered}, and delivery moves on.
+ * A record that no longer decodes is set aside the same way, as its generation, offset, error and base64 payload.
+ * Any other dispatcher error is retried with the same backoff as a failed delivery.
+ */
+@Service
+public class ColorEventOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColorEventOutbox.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final String OFFSET_FILE = "outbox.offset";
+    private static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+    @Autowired
+    private EventPublisherService eventPublisherService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${outbox.dir:./data/outbox}")
+    private String directoryName;
+
+    @Value("${outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${outbox.initial-backoff:PT0.5S}")
+    private Duration initialBackoff;
+
+    @Value("${outbox.max-backoff:PT30S}")
+    private Duration maxBackoff;
+
+    @Value("${outbox.compact-threshold-bytes:4194304}")
+    private long compactThresholdBytes;
+
+    private final EventFormat format = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+    private final ObjectMapper deadLetterMapper = new ObjectMapper();
+
+    // Guards the log channel and appendedOffset; the dispatcher waits on pending for new records
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+
+    private Path directory;
+    private FileChannel log;
+    private long generation;
+    private volatile long appendedOffset;
+
+    // Only written by the dispatcher thread after startup
+    private volatile long deliveredOffset;
+
+    private Counter deadLettered;
+
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Path.of(directoryName);
+        Files.createDirectories(directory);
+        recover();
+        deadLettered = Counter.builder("outbox.dead.lettered").register(meterRegistry);
+        running = true;
+        dispatcher = new Thread(this::dispatch, "outbox-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        dispatcher.interrupt();
+        dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        log.close();
+    }
+
+    /**
+     * Durably appends the event; delivery to the broker happens in the background.
+     */
+    public void append(CloudEvent event) throws IOException {
+        byte[] payload = format.serialize(event);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        lock.lock();
+        try {
+            long position = appendedOffset;
+            while (record.hasRemaining()) {
+                position += log.write(record, position);
+            }
+            log.force(false);
+            appendedOffset = position;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPendingBytes() {
+        return appendedOffset - deliveredOffset;
+    }
+
+    private void dispatch() {
+        long backoffMillis = initialBackoff.toMillis();
+        while (running) {
+            try {
+                awaitRecords();
+                List<OutboxRecord> batch = readBatch();
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                List<CompletableFuture<Void>> sends = new ArrayList<>(batch.size());
+                for (OutboxRecord record : batch) {
+                    sends.add(eventPublisherService.publishEvent(record.event()));
+                }
+
+                // Advance over the delivered prefix; anything after the first failure is resent
+                long delivered = deliveredOffset;
+                boolean failed = false;
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        sends.get(i).join();
+                        if (!failed) {
+                            delivered = batch.get(i).end();
+                        }
+                    } catch (CompletionException e) {
+                        if (!failed && isPermanent(e.getCause())) {
+                            // Resending cannot succeed; set it aside so later color changes are not held up
+                            deadLetter(batch.get(i), e.getCause());
+                            delivered = batch.get(i).end();
+                            continue;
+                        }
+                        if (!failed) {
+                            logger.warn("Outbox delivery of {} failed, retrying in {} ms: {}",
+                                    batch.get(i).event().getId(), backoffMillis, e.getCause().getMessage());
+                        }
+                        failed = true;
+                    }
+                }
+                markDelivered(delivered);
+
+                if (failed) {
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                    backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+                } else {
+                    backoffMillis = initialBackoff.toMillis();
+                    maybeCompact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.error("Outbox dispatcher error, retrying in {} ms", backoffMillis, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+            }
+        }
+    }
+
+    private static boolean isPermanent(Throwable failure) {
+        if (!(failure instanceof EventPublisherService.BrokerPublishException rejection)) {
+            return false;
+        }
+        int status = rejection.getStatusCode();
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    private void deadLetter(OutboxRecord record, Throwable failure) throws IOException {
+        logger.error("Broker permanently rejected outbox event {}, moving it to {}: {}",
+                record.event().getId(), DEAD_LETTER_FILE, failure.getMessage());
+        appendDeadLetter(format.serialize(record.event()));
+    }
+
+    private void deadLetterUndecodable(byte[] payload, long offset, RuntimeException failure) throws IOException {
+        logger.error("Outbox record at {}:{} does not decode, moving it to {}: {}",
+                generation, offset, DEAD_LETTER_FILE, failure.getMessage());
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("generation", generation);
+        entry.put("offset", offset);
+        entry.put("error", String.valueOf(failure.getMessage()));
+        entry.put("payload", Base64.getEncoder().encodeToString(payload));
+        appendDeadLetter(deadLetterMapper.writeValueAsBytes(entry));
+    }
+
+    private void appendDeadLetter(byte[] json) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(json));
+            channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+            channel.force(true);
+        }
+        deadLettered.increment();
+    }
+
+    private void awaitRecords() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && appendedOffset == deliveredOffset) {
+                pending.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<OutboxRecord> readBatch() throws IOException {
+        List<OutboxRecord> batch = new ArrayList<>(batchSize);
+        long position = deliveredOffset;
+        long limit = appendedOffset;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (batch.size() < batchSize && position < limit) {
+            long start = position;
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + HEADER_BYTES + length > limit) {
+                throw new IOException("Corrupt outbox record header at offset " + position);
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            position += HEADER_BYTES + length;
+
+            CloudEvent event;
+            try {
+                event = format.deserialize(payload.array());
+            } catch (RuntimeException e) {
+                if (!batch.isEmpty()) {
+                    // Deliver the records before it first; it is set aside once it heads the log
+                    break;
+                }
+                deadLetterUndecodable(payload.array(), start, e);
+                markDelivered(position);
+                continue;
+            }
+            batch.add(new OutboxRecord(event, position));
+        }
+        return batch;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of outbox log");
+            }
+        }
+    }
+
+    private void markDelivered(long offset) throws IOException {
+        if (offset != deliveredOffset) {
+            deliveredOffset = offset;
+            writeOffset(generation, offset);
+        }
+    }
+
+    // Copies the undelivered tail into the next generation and drops the old file
+    private void maybeCompact() throws IOException {
+        if (deliveredOffset < compactThresholdBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            long nextGeneration = generation + 1;
+            Path nextPath = logPath(nextGeneration);
+            FileChannel next = FileChannel.open(nextPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long tail = appendedOffset - deliveredOffset;
+            long copied = 0;
+            while (copied < tail) {
+                copied += log.transferTo(deliveredOffset + copied, tail - copied, next);
+            }
+            next.force(true);
+            // The offset file is the commit point: until it names the new generation, the old log stays valid
+            writeOffset(nextGeneration, 0);
+
+            log.close();
+            Files.deleteIfExists(logPath(generation));
+            log = next;
+            generation = nextGeneration;
+            deliveredOffset = 0;
+            appendedOffset = tail;
+            logger.info("Compacted outbox into generation {} ({} pending bytes)", generation, tail);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        Path offsetPath = directory.resolve(OFFSET_FILE);
+        if (Files.exists(offsetPath)) {
+            String[] parts = Files.readString(offsetPath, StandardCharsets.UTF_8).trim().split(":");
+            generation = Long.parseLong(parts[0]);
+            deliveredOffset = Long.parseLong(parts[1]);
+        }
+
+        // Drop generations left behind by an interrupted compaction
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("outbox-") && name.endsWith(".log") && !file.equals(logPath(generation))) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        appendedOffset = validTail();
+        if (appendedOffset < log.size()) {
+            logger.warn("Truncating torn outbox record at offset {}", appendedOffset);
+            log.truncate(appendedOffset);
+        }
+        if (appendedOffset > deliveredOffset) {
+            logger.info("Recovered {} undelivered outbox bytes", appendedOffset - deliveredOffset);
+        }
+    }
+
+    // Walks records from the delivered offset and returns the end of the last intact one
+    private long validTail() throws IOException {
+        long size = log.size();
+        long position = Math.min(deliveredOffset, size);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private void writeOffset(long offsetGeneration, long offset) throws IOException {
+        Path temp = directory.resolve(OFFSET_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap((offsetGeneration + ":" + offset).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(OFFSET_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve("outbox-" + logGeneration + ".log");
+    }
+
+    private record OutboxRecord(CloudEvent event, long end) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Pulls the top-level {@code color} field out of a color change payload with a streaming parser,
+ * skipping every other value without building a tree.
+ */
+public final class ColorPayloadReader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ColorPayloadReader() {
+    }
+
+    /**
+     * @return the color, or null when the payload is not an object or has no string {@code color} field
+     * @throws IllegalArgumentException if the color is not one of {@link ColorChange.Color}
+     */
+    public static ColorChange.Color readColor(byte[] payload) throws IOException {
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("color".equals(field) && value == JsonToken.VALUE_STRING) {
+                    return ColorChange.Color.valueOf(parser.getText().toUpperCase());
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+}
@@ -1,36 +1,201 @@
 package com.example.knativecolordemo.service;
 
 import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorTimeline;
+import com.example.knativecolordemo.model.CursorPage;
+import com.example.knativecolordemo.model.DeltaPage;
 import com.example.knativecolordemo.repository.ColorChangeRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Service
 public class ColorService {
 
+    // Published changes kept for since= polls; older versions get a reset
+    private static final int DELTA_CAPACITY = 1000;
+
     @Autowired
     private ColorChangeRepository colorChangeRepository;
 
+    @Autowired
+    private EventBroadcaster eventBroadcaster;
+
+    @Autowired
+    private ColorStatsAggregator colorStatsAggregator;
+
+    @Value("${colors.history.max-buckets:1000}")
+    private int maxBuckets;
+
+    // Latest color change, served to readers without touching the database
+    private final AtomicReference<ColorChange> current = new AtomicReference<>();
+
+    private final ChangeLog<ColorChange> changes = new ChangeLog<>(DELTA_CAPACITY);
+
+    // Running total of source characters for retention, so it never has to sum the whole table
+    private final AtomicLong payloadChars = new AtomicLong();
+
+    @PostConstruct
+    public void reload() {
+        changes.reset();
+        payloadChars.set(colorChangeRepository.sumPayloadLength());
+        // Default to RED if no color has been set; the default is not persisted
+        current.set(colorChangeRepository.findLatest()
+                .orElseGet(() -> new ColorChange(ColorChange.Color.RED, ZonedDateTime.now(), "default")));
+    }
+
     public ColorChange getCurrentColor() {
-        Optional<ColorChange> latest = colorChangeRepository.findLatest();
-        if (latest.isPresent()) {
-            return latest.get();
-        }
-        // Default to RED if no color has been set
-        ColorChange defaultColor = new ColorChange(ColorChange.Color.RED, ZonedDateTime.now(), "default");
-        return colorChangeRepository.save(defaultColor);
+        return current.get();
     }
 
     public ColorChange setColor(ColorChange.Color color, String source) {
         ColorChange colorChange = new ColorChange(color, ZonedDateTime.now(), source);
-        return colorChangeRepository.save(colorChange);
+        ColorChange saved = colorChangeRepository.save(colorChange);
+        publish(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * Persists a batch inside the caller's transaction. Call {@link #publish} once it has committed.
+     */
+    public List<ColorChange> saveAll(List<ColorChange> colorChanges) {
+        return colorChangeRepository.saveAll(colorChanges);
+    }
+
+    public void publish(List<ColorChange> committed) {
+        for (ColorChange colorChange : committed) {
+            boolean advanced = advance(colorChange);
+            payloadChars.addAndGet(payloadChars(colorChange));
+            colorStatsAggregator.record(colorChange);
+            eventBroadcaster.publish(advanced ? EventBroadcaster.COLOR_EVENT : EventBroadcaster.HISTORY_EVENT, colorChange);
+        }
+        changes.append(committed);
+    }
+
+    public long getPayloadChars() {
+        return payloadChars.get();
+    }
+
+    /**
+     * Ids of the oldest rows for retention; the latest row is never among them, so history always
+     * ends at the current color.
+     */
+    public List<Long> findOldestIdsForRetention(int limit) {
+        return colorChangeRepository.findOldestIds(latestId(), PageRequest.of(0, limit));
+    }
+
+    public List<Long> findIdsOlderThanForRetention(ZonedDateTime cutoff, int limit) {
+        return colorChangeRepository.findIdsOlderThan(cutoff, latestId(), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Deletes rows chosen by retention and takes them out of the running total.
+     *
+     * @return the source characters the rows held
+     */
+    public long deleteForRetention(List<Long> ids) {
+        long chars = colorChangeRepository.sumPayloadLength(ids);
+        colorChangeRepository.deleteAllByIdInBatch(ids);
+        payloadChars.addAndGet(-chars);
+        return chars;
     }
 
-    public List<ColorChange> getColorHistory() {
-        return colorChangeRepository.findAllOrderByTimestampDesc();
+    /**
+     * Invalidates versions handed out so far, for when rows were removed; clients reload their history pages.
+     */
+    public void resetVersion() {
+        changes.reset();
+    }
+
+    /**
+     * Increases with every published change; usable as an ETag for history reads.
+     */
+    public long getVersion() {
+        return changes.version();
+    }
+
+    public DeltaPage<ColorChange> getColorChangesSince(long since, int limit) {
+        return changes.since(since, limit);
+    }
+
+    public CursorPage<ColorChange> getColorHistory(int limit, String before, String after) {
+        Pageable page = PageRequest.of(0, limit);
+        if (after != null) {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            List<ColorChange> rows = colorChangeRepository.findAfter(cursor.getTimestamp(), cursor.getId(), page);
+            return KeysetCursor.toPage(rows, limit, true, after, ColorChange::getTimestamp, ColorChange::getId);
+        }
+        List<ColorChange> rows;
+        if (before != null) {
+            KeysetCursor cursor = KeysetCursor.decode(before);
+            rows = colorChangeRepository.findBefore(cursor.getTimestamp(), cursor.getId(), page);
+        } else {
+            rows = colorChangeRepository.findNewest(page);
+        }
+        return KeysetCursor.toPage(rows, limit, false, null, ColorChange::getTimestamp, ColorChange::getId);
+    }
+
+    /**
+     * Downsamples [from, to) into buckets holding the dominant color and the number of transitions.
+     *
+     * @throws IllegalArgumentException if the range is empty or needs more than colors.history.max-buckets buckets
+     */
+    @Transactional(readOnly = true)
+    public ColorTimeline getColorTimeline(ZonedDateTime from, ZonedDateTime to, Duration bucket) {
+        long fromMillis = from.toInstant().toEpochMilli();
+        long toMillis = to.toInstant().toEpochMilli();
+        long bucketMillis = bucket.toMillis();
+        if (bucketMillis <= 0 || toMillis <= fromMillis) {
+            throw new IllegalArgumentException("Empty time range or bucket");
+        }
+        long bucketCount = (toMillis - fromMillis + bucketMillis - 1) / bucketMillis;
+        if (bucketCount > maxBuckets) {
+            throw new IllegalArgumentException("Range needs " + bucketCount + " buckets, at most " + maxBuckets + " allowed");
+        }
+
+        ColorChange.Color initial = colorChangeRepository.findLatestBefore(from).map(ColorChange::getColor).orElse(null);
+        ColorDownsampler downsampler = new ColorDownsampler(fromMillis, bucketMillis, (int) bucketCount, initial);
+        try (Stream<ColorChangeRepository.ColorPoint> points = colorChangeRepository.streamRange(from, to)) {
+            points.forEach(point -> downsampler.accept(point.getColor(), point.getTimestamp().toInstant().toEpochMilli()));
+        }
+        return downsampler.finish(from, to, Math.min(toMillis, System.currentTimeMillis()));
+    }
+
+    private long latestId() {
+        return colorChangeRepository.findLatestId().orElse(-1L);
+    }
+
+    private static long payloadChars(ColorChange colorChange) {
+        return colorChange.getSource() != null ? colorChange.getSource().length() : 0;
+    }
+
+    // Concurrent writers may finish out of order, so only move the snapshot forward; true if it moved
+    private boolean advance(ColorChange candidate) {
+        return current.accumulateAndGet(candidate, (existing, next) -> isNewer(next, existing) ? next : existing) == candidate;
+    }
+
+    private static boolean isNewer(ColorChange candidate, ColorChange existing) {
+        if (existing == null) {
+            return true;
+        }
+        int byTime = candidate.getTimestamp().toInstant().compareTo(existing.getTimestamp().toInstant());
+        if (byTime != 0) {
+            return byTime > 0;
+        }
+        if (existing.getId() == null || candidate.getId() == null) {
+            return existing.getId() == null;
+        }
+        return candidate.getId() > existing.getId();
     }
 }
@@ -0,0 +1,192 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorStats;
+import com.example.knativecolordemo.repository.ColorChangeRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Color statistics maintained as changes are published, so reading them never touches the database.
+ *
+ * Counts and dwell time live in arrays indexed by {@link ColorChange.Color#ordinal()}; the change rate
+ * is a ring of one-second buckets over the last minute. Dwell assumes changes arrive in timestamp order:
+ * a change older than the latest one is counted but does not split an earlier interval until the next
+ * {@link #rebuild()}. Totals cover everything recorded since the last rebuild, including rows that
+ * retention has removed since.
+ */
+@Service
+public class ColorStatsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColorStatsAggregator.class);
+
+    private static final ColorChange.Color[] COLORS = ColorChange.Color.values();
+    private static final int RATE_WINDOW_SECONDS = 60;
+    private static final int REBUILD_CHUNK = 1000;
+    private static final String OTHER_SOURCE = "other";
+
+    @Autowired
+    private ColorChangeRepository colorChangeRepository;
+
+    @Value("${colors.stats.max-sources:100}")
+    private int maxSources;
+
+    // Guards all fields below; every update is O(1)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] counts = new long[COLORS.length];
+    private final long[] dwellMillis = new long[COLORS.length];
+
+    // Mutable single-element counters so an increment does not box
+    private final Map<String, long[]> sourceCounts = new HashMap<>();
+
+    private final long[] rateSeconds = new long[RATE_WINDOW_SECONDS];
+    private final long[] rateCounts = new long[RATE_WINDOW_SECONDS];
+
+    private long total;
+    private long firstMillis;
+    private ColorChange.Color lastColor;
+    private long lastMillis;
+
+    /**
+     * Recomputes the statistics from the color_changes table, oldest first.
+     */
+    @PostConstruct
+    public void rebuild() {
+        lock.lock();
+        try {
+            reset();
+            PageRequest page = PageRequest.of(0, REBUILD_CHUNK);
+            List<ColorChange> chunk = colorChangeRepository.findOldest(page);
+            while (!chunk.isEmpty()) {
+                for (ColorChange colorChange : chunk) {
+                    apply(colorChange);
+                }
+                if (chunk.size() < REBUILD_CHUNK) {
+                    break;
+                }
+                ColorChange last = chunk.get(chunk.size() - 1);
+                chunk = colorChangeRepository.findAfter(last.getTimestamp(), last.getId(), page);
+            }
+            logger.info("Rebuilt color statistics from {} color changes", total);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void record(ColorChange colorChange) {
+        lock.lock();
+        try {
+            apply(colorChange);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ColorStats snapshot() {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Map<ColorChange.Color, ColorStats.ColorTotals> colors = new EnumMap<>(ColorChange.Color.class);
+            for (ColorChange.Color color : COLORS) {
+                long dwell = dwellMillis[color.ordinal()];
+                if (color == lastColor) {
+                    dwell += Math.max(0, now - lastMillis);
+                }
+                colors.put(color, new ColorStats.ColorTotals(counts[color.ordinal()], dwell));
+            }
+
+            Map<String, Long> sources = new HashMap<>(sourceCounts.size() * 2);
+            sourceCounts.forEach((source, count) -> sources.put(source, count[0]));
+
+            long nowSecond = Math.floorDiv(now, 1000);
+            long lastMinute = 0;
+            for (int slot = 0; slot < RATE_WINDOW_SECONDS; slot++) {
+                long age = nowSecond - rateSeconds[slot];
+                if (age >= 0 && age < RATE_WINDOW_SECONDS) {
+                    lastMinute += rateCounts[slot];
+                }
+            }
+
+            return new ColorStats(total, lastColor, lastColor != null ? toDateTime(lastMillis) : null,
+                    total > 0 ? toDateTime(firstMillis) : null, colors, sources, lastMinute);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(ColorChange colorChange) {
+        ColorChange.Color color = colorChange.getColor();
+        long millis = colorChange.getTimestamp().toInstant().toEpochMilli();
+
+        counts[color.ordinal()]++;
+        if (total++ == 0 || millis < firstMillis) {
+            firstMillis = millis;
+        }
+        if (lastColor == null) {
+            lastColor = color;
+            lastMillis = millis;
+        } else if (millis >= lastMillis) {
+            dwellMillis[lastColor.ordinal()] += millis - lastMillis;
+            lastColor = color;
+            lastMillis = millis;
+        }
+
+        sourceCounter(colorChange.getSource())[0]++;
+
+        long second = Math.floorDiv(millis, 1000);
+        int slot = (int) Math.floorMod(second, RATE_WINDOW_SECONDS);
+        if (rateSeconds[slot] != second) {
+            if (second < rateSeconds[slot]) {
+                // Older than the window the slot now covers
+                return;
+            }
+            rateSeconds[slot] = second;
+            rateCounts[slot] = 0;
+        }
+        rateCounts[slot]++;
+    }
+
+    private long[] sourceCounter(String source) {
+        String key = source != null ? source : "unknown";
+        long[] counter = sourceCounts.get(key);
+        if (counter == null) {
+            if (sourceCounts.size() >= maxSources) {
+                key = OTHER_SOURCE;
+            }
+            counter = sourceCounts.computeIfAbsent(key, k -> new long[1]);
+        }
+        return counter;
+    }
+
+    private void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(dwellMillis, 0);
+        Arrays.fill(rateSeconds, 0);
+        Arrays.fill(rateCounts, 0);
+        sourceCounts.clear();
+        total = 0;
+        firstMillis = 0;
+        lastColor = null;
+        lastMillis = 0;
+    }
+
+    private static ZonedDateTime toDateTime(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+    }
+}
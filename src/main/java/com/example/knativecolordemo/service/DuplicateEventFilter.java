@@ -0,0 +1,110 @@
+package com.example.knativecolordemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Suppresses CloudEvents the broker redelivers, keyed on (source, id).
+ *
+ * Recently seen keys live in a bounded in-memory cache with time-based eviction, so a redelivery is
+ * answered before the body is parsed. Older duplicates are caught by the unique index on
+ * {@code cloud_events(event_id, source)} and reported through {@link #recordDatabaseDuplicate()}.
+ */
+@Service
+public class DuplicateEventFilter {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Insertion ordered, so the eldest entry is always the next to expire
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter checks;
+    private final Counter cacheDuplicates;
+    private final Counter databaseDuplicates;
+
+    @Autowired
+    public DuplicateEventFilter(MeterRegistry meterRegistry,
+                                @Value("${cloudevents.dedup.max-entries:100000}") int maxEntries,
+                                @Value("${cloudevents.dedup.ttl:PT10M}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.checks = meterRegistry.counter("cloudevents.dedup.checks");
+        this.cacheDuplicates = meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "cache");
+        this.databaseDuplicates = meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "database");
+        Gauge.builder("cloudevents.dedup.cache.size", this, DuplicateEventFilter::size).register(meterRegistry);
+    }
+
+    /**
+     * Records the event as seen.
+     *
+     * @return true if the same (source, id) was already seen and has not expired
+     */
+    public boolean isDuplicate(String source, String id) {
+        checks.increment();
+        String key = key(source, id);
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            evict(now);
+            if (seen.putIfAbsent(key, now) != null) {
+                cacheDuplicates.increment();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The map is not thread-safe, so even its size is read under the lock
+    private int size() {
+        lock.lock();
+        try {
+            return seen.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets an event whose persistence failed, so the broker's retry is accepted again.
+     */
+    public void forget(String source, String id) {
+        lock.lock();
+        try {
+            seen.remove(key(source, id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordDatabaseDuplicate() {
+        databaseDuplicates.increment();
+    }
+
+    private void evict(long now) {
+        Iterator<Long> eldest = seen.values().iterator();
+        while (eldest.hasNext()) {
+            long insertedAt = eldest.next();
+            if (seen.size() <= maxEntries && now - insertedAt < ttlNanos) {
+                return;
+            }
+            eldest.remove();
+        }
+    }
+
+    private static String key(String source, String id) {
+        return source + '\u0000' + id;
+    }
+}
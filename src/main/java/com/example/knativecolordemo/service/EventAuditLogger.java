@@ -0,0 +1,96 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.logging.CountingAsyncAppender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Structured, sampled audit trail of received CloudEvents.
+ *
+ * Lines go to the {@code cloudevents.audit} logger, which logback-spring.xml routes through a
+ * non-blocking async appender. At INFO a sample of events is logged with a truncated payload.
+ * Setting {@code cloudevents.audit.<event type>} to DEBUG, for example through
+ * {@code /actuator/loggers}, logs every event of that type with its full payload. Types are chosen by senders
+ * and Logback keeps every logger it creates, so only the first {@code cloudevents.audit.max-types} types get
+ * their own logger; the rest are logged through {@code cloudevents.audit} itself.
+ */
+@Service
+public class EventAuditLogger {
+
+    private static final String AUDIT_LOGGER = "cloudevents.audit";
+
+    private static final Logger audit = LoggerFactory.getLogger(AUDIT_LOGGER);
+
+    private final Map<String, Logger> typeLoggers = new ConcurrentHashMap<>();
+
+    private final double sampleRate;
+    private final int maxPayloadChars;
+    private final int maxTypes;
+
+    @Autowired
+    public EventAuditLogger(MeterRegistry meterRegistry,
+                            @Value("${cloudevents.audit.sample-rate:0.01}") double sampleRate,
+                            @Value("${cloudevents.audit.max-payload-chars:256}") int maxPayloadChars,
+                            @Value("${cloudevents.audit.max-types:100}") int maxTypes) {
+        this.sampleRate = sampleRate;
+        this.maxPayloadChars = maxPayloadChars;
+        this.maxTypes = maxTypes;
+        FunctionCounter.builder("cloudevents.audit.dropped", this, ignored -> CountingAsyncAppender.getDroppedCount())
+                .description("Audit log lines dropped because the async appender queue was full")
+                .register(meterRegistry);
+    }
+
+    public void received(String id, String type, String source, String subject, OffsetDateTime time, String data) {
+        Logger typeLogger = typeLogger(type);
+        if (typeLogger.isDebugEnabled()) {
+            typeLogger.atDebug()
+                    .setMessage("cloudevent received")
+                    .addKeyValue("id", id)
+                    .addKeyValue("type", type)
+                    .addKeyValue("source", source)
+                    .addKeyValue("subject", subject)
+                    .addKeyValue("time", time)
+                    .addKeyValue("data", data)
+                    .log();
+        } else if (audit.isInfoEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            audit.atInfo()
+                    .setMessage("cloudevent received")
+                    .addKeyValue("id", id)
+                    .addKeyValue("type", type)
+                    .addKeyValue("source", source)
+                    .addKeyValue("subject", subject)
+                    .addKeyValue("time", time)
+                    .addKeyValue("data", truncate(data))
+                    .addKeyValue("sampleRate", sampleRate)
+                    .log();
+        }
+    }
+
+    private Logger typeLogger(String type) {
+        Logger typeLogger = typeLoggers.get(type);
+        if (typeLogger != null) {
+            return typeLogger;
+        }
+        if (type == null || typeLoggers.size() >= maxTypes) {
+            return audit;
+        }
+        return typeLoggers.computeIfAbsent(type, t -> LoggerFactory.getLogger(AUDIT_LOGGER + "." + t));
+    }
+
+    private String truncate(String data) {
+        if (data == null || data.length() <= maxPayloadChars) {
+            return data;
+        }
+        return data.substring(0, maxPayloadChars) + "...(" + data.length() + " chars)";
+    }
+}
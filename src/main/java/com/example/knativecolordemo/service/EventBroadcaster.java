@@ -0,0 +1,308 @@
+package com.example.knativecolordemo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fans out color changes and received CloudEvents to Server-Sent Events subscribers.
+ *
+ * Connections are held as async servlet requests, so an idle subscriber costs a buffer and no thread.
+ * Each subscriber has a bounded buffer drained by a small shared sender pool; when a slow client
+ * falls behind, its oldest buffered events are dropped.
+ *
+ * Sends are blocking writes, so a client that stops reading can hold a sender thread until the container's
+ * write timeout. A send still running after {@code stream.send-timeout} evicts its subscriber, and the pool
+ * gets a stand-in thread until that send returns, so other subscribers keep being served. At most
+ * {@code stream.sender-threads} stand-ins run at once.
+ */
+@Service
+public class EventBroadcaster {
+
+    public static final String CURRENT_EVENT = "current";
+    public static final String COLOR_EVENT = "color";
+    // A recorded change older than the current color: timeline only
+    public static final String HISTORY_EVENT = "history";
+    public static final String CLOUD_EVENT = "cloudevent";
+
+    private static final Logger logger = LoggerFactory.getLogger(EventBroadcaster.class);
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong evictedSubscribers = new AtomicLong();
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int senderThreads;
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService heartbeat;
+
+    // Guards resizing the sender pool; standIns counts threads added for stalled sends
+    private final ReentrantLock poolLock = new ReentrantLock();
+    private int standIns;
+
+    @Autowired
+    public EventBroadcaster(ObjectMapper objectMapper,
+                            @Value("${stream.subscriber.buffer-size:64}") int bufferSize,
+                            @Value("${stream.timeout:PT30M}") Duration timeout,
+                            @Value("${stream.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+                            @Value("${stream.sender-threads:4}") int senderThreads,
+                            @Value("${stream.send-timeout:PT5S}") Duration sendTimeout) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.senderThreads = senderThreads;
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemon("sse-sender"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("sse-heartbeat"));
+        // Heartbeats keep proxies from closing idle streams and surface dead connections
+        this.heartbeat.scheduleAtFixedRate(() -> broadcast(new Frame(null, "keepalive")),
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(1, sendTimeout.toMillis() / 2);
+        this.heartbeat.scheduleAtFixedRate(this::evictStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a new subscriber, then queues the payload from {@code initialPayload} as its first event.
+     * The payload is read only once the subscriber is registered, so a change published in between is not lost.
+     */
+    public SseEmitter subscribe(String initialEvent, Supplier<?> initialPayload) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        Object payload = initialPayload.get();
+        if (payload != null) {
+            subscriber.offer(new Frame(initialEvent, toJson(payload)));
+        }
+        return emitter;
+    }
+
+    public void publish(String event, Object payload) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // Serialize once for all subscribers
+        broadcast(new Frame(event, toJson(payload)));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getEvictedSubscribers() {
+        return evictedSubscribers.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private void broadcast(Frame frame) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private void evictStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.evictIfStalled(now);
+        }
+    }
+
+    // Raising the core size starts a thread for queued drains right away
+    private boolean addStandIn() {
+        poolLock.lock();
+        try {
+            if (standIns >= senderThreads) {
+                return false;
+            }
+            standIns++;
+            sender.setMaximumPoolSize(senderThreads + standIns);
+            sender.setCorePoolSize(senderThreads + standIns);
+            return true;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    // The surplus thread exits once idle
+    private void removeStandIn() {
+        poolLock.lock();
+        try {
+            standIns--;
+            sender.setCorePoolSize(senderThreads + standIns);
+            sender.setMaximumPoolSize(senderThreads + standIns);
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize stream event", e);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A null event name marks an SSE comment
+    private record Frame(String event, String data) {
+
+        SseEmitter.SseEventBuilder toSseEvent() {
+            return event == null ? SseEmitter.event().comment(data) : SseEmitter.event().name(event).data(data);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ArrayDeque<Frame> buffer = new ArrayDeque<>();
+        // A lock rather than synchronized, so publishers running on virtual threads are never pinned.
+        // Also guards the send state below, so an eviction and the end of the send it targets do not interleave
+        private final ReentrantLock bufferLock = new ReentrantLock();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        // Start of the running send, 0 while none is running
+        private volatile long sendStartedNanos;
+        private volatile boolean evicted;
+        private boolean standIn;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Frame frame) {
+            bufferLock.lock();
+            try {
+                if (evicted) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    buffer.pollFirst();
+                    droppedEvents.incrementAndGet();
+                }
+                buffer.addLast(frame);
+            } finally {
+                bufferLock.unlock();
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        // Runs on the heartbeat thread while the send blocks a sender thread. Completing the emitter would
+        // wait for that send, so the sender completes it once the send returns.
+        void evictIfStalled(long now) {
+            bufferLock.lock();
+            try {
+                long started = sendStartedNanos;
+                if (evicted || started == 0 || now - started <= sendTimeoutNanos) {
+                    return;
+                }
+                evicted = true;
+                buffer.clear();
+                standIn = addStandIn();
+            } finally {
+                bufferLock.unlock();
+            }
+            subscribers.remove(this);
+            evictedSubscribers.incrementAndGet();
+            logger.warn("Evicted stream subscriber whose send did not complete within {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+        }
+
+        private void drain() {
+            try {
+                Frame frame;
+                while ((frame = next()) != null) {
+                    try {
+                        emitter.send(frame.toSseEvent());
+                    } finally {
+                        sent();
+                    }
+                }
+                if (evicted) {
+                    emitter.completeWithError(new IOException("Stream send timed out"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping stream subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        // The next frame to send, or null once the buffer is empty or the subscriber was evicted
+        private Frame next() {
+            bufferLock.lock();
+            try {
+                Frame frame = evicted ? null : buffer.pollFirst();
+                if (frame == null) {
+                    draining.set(false);
+                } else {
+                    sendStartedNanos = System.nanoTime();
+                }
+                return frame;
+            } finally {
+                bufferLock.unlock();
+            }
+        }
+
+        private void sent() {
+            bufferLock.lock();
+            try {
+                sendStartedNanos = 0;
+                if (standIn) {
+                    standIn = false;
+                    removeStandIn();
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+        }
+    }
+}
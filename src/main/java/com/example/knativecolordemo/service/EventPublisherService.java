@@ -1,29 +1,39 @@
 package com.example.knativecolordemo.service;
 
 import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.core.message.MessageWriter;
 import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.provider.EventFormatProvider;
 import io.cloudevents.http.HttpMessageFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import com.example.knativecolordemo.model.ColorChange;
 import com.example.knativecolordemo.model.ColorChange.Color;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
-import java.net.HttpURLConnection;
+import jakarta.annotation.PostConstruct;
+
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class EventPublisherService {
@@ -33,96 +43,168 @@ public class EventPublisherService {
     @Value("${knative.broker.url:http://broker-ingress.knative-eventing.svc.cluster.local/eventing-demo/default}")
     private String brokerUrl;
 
+    @Value("${knative.broker.http-version:HTTP_1_1}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${knative.broker.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${knative.broker.request-timeout:PT5S}")
+    private Duration requestTimeout;
+
+    @Value("${knative.broker.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${knative.broker.acquire-timeout:PT1S}")
+    private Duration acquireTimeout;
+
+    // Empty for binary content mode, else a structured format such as application/cloudevents+protobuf
+    @Value("${knative.broker.event-format:}")
+    private String eventFormatType;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private CloudEventMetrics cloudEventMetrics;
+
     private final ObjectMapper objectMapper;
 
+    private URI brokerUri;
+
+    private EventFormat eventFormat;
+
+    // Shared client: keeps connections to broker-ingress alive; HTTP/2 only when knative.broker.http-version opts in
+    private HttpClient httpClient;
+
+    private Semaphore inFlight;
+
     public EventPublisherService() {
 
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
-    }    public void publishManualColorChangeEvent(Color color, ZonedDateTime timestamp, String source) {
-        try {
-            // Create event data
-            ColorChange eventData = new ColorChange(color, timestamp, source);
-
-            // Serialize event data to JSON
-            String eventDataJson = objectMapper.writeValueAsString(eventData);
-            byte[] eventDataBytes = eventDataJson.getBytes();
-
-            // Build CloudEvent
-            CloudEvent event = CloudEventBuilder.v1()
-                    .withId(UUID.randomUUID().toString())
-                    // .withType("com.example.color.manual.change")
-                    .withType("com.example.color.change")
-                    .withSource(URI.create("com.example.knativecolordemo"))
-                    .withSubject("manual-color-change")
-                    .withTime(OffsetDateTime.now())
-                    .withData("application/json", eventDataBytes)
-                    .build();
-
-            // Publish event
-            publishEvent(event);
-
-        } catch (Exception e) {
-            logger.error("Error publishing color change event", e);
+    }
+
+    @PostConstruct
+    public void init() {
+        brokerUri = URI.create(brokerUrl);
+        if (!eventFormatType.isBlank()) {
+            eventFormat = EventFormatProvider.getInstance().resolveFormat(eventFormatType);
+            if (eventFormat == null) {
+                throw new IllegalStateException("Unsupported knative.broker.event-format: " + eventFormatType);
+            }
         }
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout);
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            // Run response handling and dependent stages on virtual threads rather than the client's cached pool
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("broker-client-");
+            executor.setVirtualThreads(true);
+            builder.executor(executor);
+        }
+        httpClient = builder.build();
+        inFlight = new Semaphore(maxInFlight);
     }
 
-      private void publishEvent(CloudEvent event) {
-        try {
+    /**
+     * Builds the event announcing a manual color change; deliver it through {@link ColorEventOutbox}.
+     */
+    public CloudEvent createManualColorChangeEvent(Color color, ZonedDateTime timestamp, String source) throws JsonProcessingException {
+        // Create event data
+        ColorChange eventData = new ColorChange(color, timestamp, source);
+
+        // Serialize event data to JSON
+        byte[] eventDataBytes = objectMapper.writeValueAsBytes(eventData);
+
+        // Build CloudEvent
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                // .withType("com.example.color.manual.change")
+                .withType("com.example.color.change")
+                .withSource(URI.create("com.example.knativecolordemo"))
+                .withSubject("manual-color-change")
+                .withTime(OffsetDateTime.now())
+                .withData("application/json", eventDataBytes)
+                .build();
+    }
 
-            URL url = URI.create(brokerUrl).toURL();
-            HttpURLConnection httpUrlConnection = (HttpURLConnection) url.openConnection();
-            httpUrlConnection.setRequestMethod("POST");
-            httpUrlConnection.setDoOutput(true);
-            httpUrlConnection.setDoInput(true);
+    /**
+     * Sends the event to the broker in binary content mode, or structured in {@code knative.broker.event-format} when set.
+     * Blocks the calling thread for up to {@code knative.broker.acquire-timeout} while all in-flight slots are taken.
+     *
+     * @return a future completed once the broker acknowledged the event with a 2xx response
+     */
+    public CompletableFuture<Void> publishEvent(CloudEvent event) {
+        return publishEvent(event, acquireTimeout);
+    }
 
-            logger.info("sending message to broker {}", brokerUrl);
+    /**
+     * @param acquireTimeout how long the calling thread may block for an in-flight slot; zero fails at once
+     */
+    public CompletableFuture<Void> publishEvent(CloudEvent event, Duration acquireTimeout) {
+        long start = System.nanoTime();
+        String source = event.getSource().toString();
+        try {
+            if (!inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                cloudEventMetrics.recordPublish(event.getType(), source, "rejected", start);
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Too many in-flight broker requests (" + maxInFlight + ")"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
 
-            MessageWriter messageWriter = createMessageWriter(httpUrlConnection);
+        try {
+            HttpRequest request = createRequest(event);
+            logger.debug("Sending message to broker {}", brokerUrl);
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, e) -> {
+                        inFlight.release();
+                        cloudEventMetrics.recordPublish(event.getType(), source,
+                                response != null ? Integer.toString(response.statusCode()) : "error", start);
+                    })
+                    .thenAccept(response -> {
+                        int responseCode = response.statusCode();
+                        if (responseCode < 200 || responseCode >= 300) {
+                            logger.error("Failed to publish event. Response code: {}, Error: {}", responseCode, response.body());
+                            throw new BrokerPublishException(responseCode);
+                        }
+                        logger.info("Successfully published event: {} ({})", event.getId(), event.getType());
+                    });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            cloudEventMetrics.recordPublish(event.getType(), source, "error", start);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private HttpRequest createRequest(CloudEvent event) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(brokerUri).timeout(requestTimeout);
+        MessageWriter messageWriter = HttpMessageFactory.createWriter(
+            builder::header,
+            body -> builder.POST(body != null
+                ? HttpRequest.BodyPublishers.ofByteArray(body)
+                : HttpRequest.BodyPublishers.noBody()));
+        if (eventFormat != null) {
+            messageWriter.writeStructured(event, eventFormat);
+        } else {
             messageWriter.writeBinary(event);
+        }
+        return builder.build();
+    }
 
-            // Actually send the request and get the response
-            int responseCode = httpUrlConnection.getResponseCode();
-            logger.info("Broker response code: {}", responseCode);
-
-            if (responseCode >= 200 && responseCode < 300) {
-                logger.info("Successfully published event: {} ({})", event.getId(), event.getType());
-            } else {
-                // Read error response
-                String errorResponse = "";
-                try {
-                    errorResponse = new String(httpUrlConnection.getErrorStream().readAllBytes());
-                } catch (Exception e) {
-                    // Ignore error reading error stream
-                }
-                logger.error("Failed to publish event. Response code: {}, Error: {}", responseCode, errorResponse);
-                throw new RuntimeException("Failed to publish event. Response code: " + responseCode);
-            }
+    public static class BrokerPublishException extends RuntimeException {
 
-            logger.info("Successfully published event: {} ({})", event.getId(), event.getType());
+        private final int statusCode;
 
-        } catch (Exception e) {
-            logger.error("Error publishing event to broker", e);
-            throw new RuntimeException("Failed to publish event", e);
+        public BrokerPublishException(int statusCode) {
+            super("Failed to publish event. Response code: " + statusCode);
+            this.statusCode = statusCode;
         }
-    }
 
-    private static MessageWriter createMessageWriter(HttpURLConnection httpUrlConnection) {
-        return HttpMessageFactory.createWriter(
-            httpUrlConnection::setRequestProperty,
-            body -> {
-                try {
-                    if (body != null) {
-                        httpUrlConnection.setRequestProperty("content-length", String.valueOf(body.length));
-                        try (OutputStream outputStream = httpUrlConnection.getOutputStream()) {
-                            outputStream.write(body);
-                        }
-                    } else {
-                        httpUrlConnection.setRequestProperty("content-length", "0");
-                    }
-                } catch (IOException t) {
-                    throw new UncheckedIOException(t);
-                }
-            });
+        public int getStatusCode() { return statusCode; }
     }
 }
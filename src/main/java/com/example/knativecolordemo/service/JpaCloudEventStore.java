@@ -0,0 +1,150 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.repository.CloudEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Default store: CloudEvents as JPA entities in the H2 {@code cloud_events} table.
+ *
+ * Keeps a running total of payload characters for retention: seeded once at startup, added to when a
+ * save commits or a snapshot batch is loaded, and reduced as retention deletes rows.
+ */
+@Component
+@ConditionalOnProperty(name = "cloudevents.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaCloudEventStore implements CloudEventStore {
+
+    private static final String SCAN_SQL =
+            "SELECT id, event_id, event_type, source, timestamp, data, subject FROM cloud_events ORDER BY timestamp, id";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO cloud_events (id, event_id, event_type, source, timestamp, data, subject) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Snapshot export and load go through plain JDBC: no entity instances, dirty checking or id generation
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CloudEventRepository cloudEventRepository;
+
+    private final AtomicLong payloadChars = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        payloadChars.set(cloudEventRepository.sumPayloadLength());
+    }
+
+    @Override
+    public List<CloudEventRecord> saveAll(List<CloudEventRecord> records) {
+        List<CloudEventRecord> saved = cloudEventRepository.saveAll(records);
+        long chars = payloadChars(records);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The ingest writer's transaction may still roll back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    payloadChars.addAndGet(chars);
+                }
+            });
+        } else {
+            payloadChars.addAndGet(chars);
+        }
+        return saved;
+    }
+
+    @Override
+    public List<CloudEventRecord> findNewest(int limit) {
+        return cloudEventRepository.findNewest(PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<CloudEventRecord> findBefore(ZonedDateTime timestamp, long id, int limit) {
+        return cloudEventRepository.findBefore(timestamp, id, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<CloudEventRecord> findAfter(ZonedDateTime timestamp, long id, int limit) {
+        return cloudEventRepository.findAfter(timestamp, id, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public void scan(Consumer<CloudEventRecord> consumer) {
+        jdbcTemplate.query(SCAN_SQL, (RowCallbackHandler) rs -> consumer.accept(toRecord(rs)));
+    }
+
+    @Override
+    public void load(List<CloudEventRecord> records) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, record) -> {
+            ps.setLong(1, record.getId());
+            ps.setString(2, record.getEventId());
+            ps.setString(3, record.getEventType());
+            ps.setString(4, record.getSource());
+            ps.setObject(5, record.getTimestamp().toOffsetDateTime());
+            ps.setString(6, record.getData());
+            ps.setString(7, record.getSubject());
+        });
+        payloadChars.addAndGet(payloadChars(records));
+    }
+
+    @Override
+    public void finishLoad() {
+        SnapshotService.restartSequence(jdbcTemplate, "cloud_events", "cloud_events_seq");
+    }
+
+    @Override
+    public void clear() {
+        jdbcTemplate.execute("TRUNCATE TABLE cloud_events");
+        payloadChars.set(0);
+    }
+
+    @Override
+    public ChunkedRetention.Result enforce(RetentionPolicy policy, int chunkSize) {
+        return ChunkedRetention.enforce(new ChunkedRetention.Table() {
+            public long count() { return cloudEventRepository.count(); }
+            public long payloadChars() { return payloadChars.get(); }
+            public List<Long> oldestIds(int limit) { return cloudEventRepository.findOldestIds(PageRequest.of(0, limit)); }
+            public List<Long> idsOlderThan(ZonedDateTime cutoff, int limit) {
+                return cloudEventRepository.findIdsOlderThan(cutoff, PageRequest.of(0, limit));
+            }
+            public long delete(List<Long> ids) {
+                // A primary key lookup of the chunk, not a table scan
+                long chars = cloudEventRepository.sumPayloadLength(ids);
+                cloudEventRepository.deleteAllByIdInBatch(ids);
+                payloadChars.addAndGet(-chars);
+                return chars;
+            }
+        }, policy, chunkSize);
+    }
+
+    private static long payloadChars(List<CloudEventRecord> records) {
+        long chars = 0;
+        for (CloudEventRecord record : records) {
+            chars += record.getData() != null ? record.getData().length() : 0;
+        }
+        return chars;
+    }
+
+    private static CloudEventRecord toRecord(ResultSet rs) throws SQLException {
+        CloudEventRecord record = new CloudEventRecord(rs.getString("event_id"), rs.getString("event_type"),
+                rs.getString("source"), rs.getObject("timestamp", OffsetDateTime.class).toZonedDateTime(),
+                rs.getString("data"), rs.getString("subject"));
+        record.setId(rs.getLong("id"));
+        return record;
+    }
+}
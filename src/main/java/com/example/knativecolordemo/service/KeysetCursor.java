@@ -0,0 +1,73 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CursorPage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque (timestamp, id) position used to page through tables ordered by timestamp and id.
+ */
+public final class KeysetCursor {
+
+    private final ZonedDateTime timestamp;
+    private final long id;
+
+    private KeysetCursor(ZonedDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public ZonedDateTime getTimestamp() { return timestamp; }
+
+    public long getId() { return id; }
+
+    public static String encode(ZonedDateTime timestamp, Long id) {
+        String raw = timestamp.toInstant() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            Instant instant = Instant.parse(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new KeysetCursor(instant.atZone(ZoneOffset.UTC), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Builds a newest-first page from rows returned by a keyset query.
+     *
+     * @param ascending whether the rows came from an "after" query (oldest first)
+     * @param after the cursor the rows were fetched after, kept as the poll position when nothing newer exists
+     */
+    static <T> CursorPage<T> toPage(List<T> rows, int limit, boolean ascending, String after,
+                                    Function<T, ZonedDateTime> timestampOf, Function<T, Long> idOf) {
+        List<T> items = rows;
+        if (ascending) {
+            items = new ArrayList<>(rows);
+            Collections.reverse(items);
+        }
+        if (items.isEmpty()) {
+            return new CursorPage<>(items, null, after);
+        }
+        T newest = items.get(0);
+        T oldest = items.get(items.size() - 1);
+        // An "after" page always has older rows behind it; a descending page only when it came back full
+        String next = ascending || rows.size() >= limit
+                ? encode(timestampOf.apply(oldest), idOf.apply(oldest))
+                : null;
+        return new CursorPage<>(items, next, encode(timestampOf.apply(newest), idOf.apply(newest)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.knativecolordemo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background compactor that keeps the in-memory tables within their retention policies.
+ *
+ * Row counts and approximate sizes from the last run are exposed as {@code retention.rows} and
+ * {@code retention.bytes} gauges, and {@code retention.heap.per.row} divides the heap left after
+ * the last collection by the stored rows. The latest color change is never removed.
+ */
+@Service
+public class RetentionCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionCompactor.class);
+
+    private final CloudEventStore cloudEventStore;
+    private final CloudEventService cloudEventService;
+    private final ColorService colorService;
+
+    private final RetentionPolicy cloudEventPolicy;
+    private final RetentionPolicy colorChangePolicy;
+    private final int chunkSize;
+
+    private final AtomicLong cloudEventRows = new AtomicLong();
+    private final AtomicLong cloudEventBytes = new AtomicLong();
+    private final AtomicLong colorChangeRows = new AtomicLong();
+    private final AtomicLong colorChangeBytes = new AtomicLong();
+
+    @Autowired
+    public RetentionCompactor(CloudEventStore cloudEventStore,
+                              CloudEventService cloudEventService,
+                              ColorService colorService,
+                              MeterRegistry meterRegistry,
+                              @Value("${retention.cloud-events.max-rows:100000}") long cloudEventMaxRows,
+                              @Value("${retention.cloud-events.max-age:PT24H}") Duration cloudEventMaxAge,
+                              @Value("${retention.cloud-events.max-bytes:67108864}") long cloudEventMaxBytes,
+                              @Value("${retention.color-changes.max-rows:100000}") long colorChangeMaxRows,
+                              @Value("${retention.color-changes.max-age:P7D}") Duration colorChangeMaxAge,
+                              @Value("${retention.color-changes.max-bytes:16777216}") long colorChangeMaxBytes,
+                              @Value("${retention.chunk-size:500}") int chunkSize) {
+        this.cloudEventStore = cloudEventStore;
+        this.cloudEventService = cloudEventService;
+        this.colorService = colorService;
+        this.cloudEventPolicy = new RetentionPolicy(cloudEventMaxRows, cloudEventMaxAge, cloudEventMaxBytes);
+        this.colorChangePolicy = new RetentionPolicy(colorChangeMaxRows, colorChangeMaxAge, colorChangeMaxBytes);
+        this.chunkSize = chunkSize;
+
+        Gauge.builder("retention.rows", cloudEventRows, AtomicLong::get).tag("table", "cloud_events").register(meterRegistry);
+        Gauge.builder("retention.bytes", cloudEventBytes, AtomicLong::get).tag("table", "cloud_events").register(meterRegistry);
+        Gauge.builder("retention.rows", colorChangeRows, AtomicLong::get).tag("table", "color_changes").register(meterRegistry);
+        Gauge.builder("retention.bytes", colorChangeBytes, AtomicLong::get).tag("table", "color_changes").register(meterRegistry);
+        Gauge.builder("retention.heap.per.row", this, RetentionCompactor::heapPerRow).baseUnit("bytes").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${retention.interval:PT30S}", initialDelayString = "${retention.interval:PT30S}")
+    public void compact() {
+        try {
+            ChunkedRetention.Result events = cloudEventStore.enforce(cloudEventPolicy, chunkSize);
+            cloudEventRows.set(events.rows());
+            cloudEventBytes.set(events.bytes());
+            if (events.deleted() > 0) {
+                // Cached pages may hold removed rows; a 304 would keep them alive
+                cloudEventService.resetVersion();
+            }
+
+            ChunkedRetention.Result colors = ChunkedRetention.enforce(colorChangeTable(), colorChangePolicy, chunkSize);
+            colorChangeRows.set(colors.rows());
+            colorChangeBytes.set(colors.bytes());
+            if (colors.deleted() > 0) {
+                colorService.resetVersion();
+            }
+
+            if (events.deleted() > 0 || colors.deleted() > 0) {
+                logger.info("Retention removed {} cloud events and {} color changes", events.deleted(), colors.deleted());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Retention compaction failed", e);
+        }
+    }
+
+    private ChunkedRetention.Table colorChangeTable() {
+        return new ChunkedRetention.Table() {
+            public long count() { return colorChangeRepository.count(); }
+            public long payloadChars() { return colorService.getPayloadChars(); }
+            public List<Long> oldestIds(int limit) { return colorService.findOldestIdsForRetention(limit); }
+            public List<Long> idsOlderThan(ZonedDateTime cutoff, int limit) {
+                return colorService.findIdsOlderThanForRetention(cutoff, limit);
+            }
+            public long delete(List<Long> ids) { return colorService.deleteForRetention(ids); }
+        };
+    }
+
+    // Heap still in use after the last collection, spread over every stored row; an upper bound, since
+    // it includes the application's own baseline, that converges on the per-row cost as the tables grow
+    private double heapPerRow() {
+        long rows = cloudEventRows.get() + colorChangeRows.get();
+        if (rows == 0) {
+            return Double.NaN;
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                used += afterGc.getUsed();
+            }
+        }
+        return (double) used / rows;
+    }
+}
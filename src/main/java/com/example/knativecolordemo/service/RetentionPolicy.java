@@ -0,0 +1,25 @@
+package com.example.knativecolordemo.service;
+
+import java.time.Duration;
+
+/**
+ * Limits for one table; a zero limit is disabled.
+ */
+public class RetentionPolicy {
+
+    private final long maxRows;
+    private final Duration maxAge;
+    private final long maxBytes;
+
+    public RetentionPolicy(long maxRows, Duration maxAge, long maxBytes) {
+        this.maxRows = maxRows;
+        this.maxAge = maxAge;
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxRows() { return maxRows; }
+
+    public Duration getMaxAge() { return maxAge; }
+
+    public long getMaxBytes() { return maxBytes; }
+}
@@ -0,0 +1,540 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * CloudEvent store backed by fixed-size, memory-mapped, append-only segment files.
+ *
+ * Records are framed as {@code [int length][int crc32][payload]} in {@code segment-<ordinal>.seg}, so event
+ * bodies live in the page cache rather than on the heap and survive a restart. The only heap structure is
+ * a (timestamp, id) index of three longs per event; pages are read straight out of the mapped segments.
+ * Retention drops whole segments, oldest first, and never the segment being written.
+ *
+ * Segments cannot be rolled back, so inside a transaction (the ingest writer stores color changes in the
+ * same one) ids are assigned and records encoded and size-checked right away, failing the transaction
+ * if one cannot be stored, but they are only appended once it commits. A failure after the commit is
+ * logged rather than thrown: the transaction cannot be undone any more, and a caller retrying it would
+ * store the color changes twice.
+ *
+ * Unlike the JPA store there is no unique index on (event_id, source): redeliveries are only suppressed
+ * within the {@link DuplicateEventFilter} window.
+ */
+@Component
+@ConditionalOnProperty(name = "cloudevents.store", havingValue = "segment")
+public class SegmentCloudEventStore implements CloudEventStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentCloudEventStore.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_STRIDE = 3;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SCAN_CHUNK = 1000;
+
+    @Value("${cloudevents.segment.dir:./data/segments}")
+    private String directoryName;
+
+    @Value("${cloudevents.segment.size-bytes:67108864}")
+    private int segmentSize;
+
+    // Appends and retention take the write lock; page reads share the read lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Path directory;
+
+    // Oldest first; the last segment is the one being appended to
+    private final List<Segment> segments = new ArrayList<>();
+    private long nextId = 1;
+
+    // [epoch nanos, id, location] triplets sorted by timestamp then id; a location packs the
+    // segment ordinal into the high 32 bits and the record offset into the low 32 bits
+    private long[] index = new long[INDEX_STRIDE * 1024];
+    private int entries;
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = Path.of(directoryName);
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().matches("segment-\\d+\\.seg"))
+                    .sorted(Comparator.comparingInt(SegmentCloudEventStore::ordinalOf))
+                    .toList();
+        }
+        for (Path file : files) {
+            Segment segment = Segment.open(file, ordinalOf(file), segmentSize);
+            recover(segment);
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.open(segmentPath(0), 0, segmentSize));
+        }
+        logger.info("Opened {} CloudEvent segments holding {} events", segments.size(), entries);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CloudEventRecord> saveAll(List<CloudEventRecord> records) {
+        lock.writeLock().lock();
+        try {
+            // Ids of a rolled-back batch are skipped, like a sequence's
+            for (CloudEventRecord record : records) {
+                record.setId(nextId++);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<byte[]> payloads = encodeAll(records);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<CloudEventRecord> pending = List.copyOf(records);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        appendAll(pending, payloads);
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to append {} committed CloudEvents to segments", pending.size(), e);
+                    }
+                }
+            });
+        } else {
+            appendAll(records, payloads);
+        }
+        return records;
+    }
+
+    @Override
+    public List<CloudEventRecord> findNewest(int limit) {
+        lock.readLock().lock();
+        try {
+            return readDescending(entries - 1, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CloudEventRecord> findBefore(ZonedDateTime timestamp, long id, int limit) {
+        lock.readLock().lock();
+        try {
+            return readDescending(lowerBound(epochNanos(timestamp), id) - 1, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CloudEventRecord> findAfter(ZonedDateTime timestamp, long id, int limit) {
+        lock.readLock().lock();
+        try {
+            List<CloudEventRecord> rows = new ArrayList<>(Math.min(limit, entries));
+            for (int entry = upperBound(epochNanos(timestamp), id); entry < entries && rows.size() < limit; entry++) {
+                rows.add(read(index[entry * INDEX_STRIDE + 2]));
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Reads a chunk at a time under the read lock so a long export does not hold up appends
+    @Override
+    public void scan(Consumer<CloudEventRecord> consumer) {
+        long lastTimestamp = Long.MIN_VALUE;
+        long lastId = Long.MIN_VALUE;
+        List<CloudEventRecord> chunk = new ArrayList<>(SCAN_CHUNK);
+        while (true) {
+            chunk.clear();
+            lock.readLock().lock();
+            try {
+                for (int entry = upperBound(lastTimestamp, lastId); entry < entries && chunk.size() < SCAN_CHUNK; entry++) {
+                    int base = entry * INDEX_STRIDE;
+                    chunk.add(read(index[base + 2]));
+                    lastTimestamp = index[base];
+                    lastId = index[base + 1];
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (chunk.isEmpty()) {
+                return;
+            }
+            chunk.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void load(List<CloudEventRecord> records) {
+        appendAll(records, encodeAll(records));
+    }
+
+    // Encodes up front so a record too large for a segment fails before anything is appended
+    private List<byte[]> encodeAll(List<CloudEventRecord> records) {
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        for (CloudEventRecord record : records) {
+            byte[] payload = encode(record);
+            if (HEADER_BYTES + payload.length > segmentSize) {
+                throw new IllegalArgumentException("CloudEvent " + record.getEventId() + " does not fit in a segment");
+            }
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    private void appendAll(List<CloudEventRecord> records, List<byte[]> payloads) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                append(records.get(i), payloads.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append CloudEvent segment record", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // append() already moves nextId past every loaded id
+    @Override
+    public void finishLoad() {
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+            segments.clear();
+            entries = 0;
+            nextId = 1;
+            segments.add(Segment.open(segmentPath(0), 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear CloudEvent segments", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops whole segments, so limits are honoured to segment granularity; {@code chunkSize} does not apply.
+     */
+    @Override
+    public ChunkedRetention.Result enforce(RetentionPolicy policy, int chunkSize) {
+        long cutoff = policy.getMaxAge() != null && !policy.getMaxAge().isZero()
+                ? epochNanos(ZonedDateTime.now().minus(policy.getMaxAge()))
+                : Long.MIN_VALUE;
+
+        lock.writeLock().lock();
+        try {
+            long deleted = 0;
+            while (segments.size() > 1) {
+                Segment oldest = segments.get(0);
+                boolean expired = oldest.newestTimestamp < cutoff;
+                boolean overRows = policy.getMaxRows() > 0 && entries > policy.getMaxRows();
+                boolean overBytes = policy.getMaxBytes() > 0 && usedBytes() > policy.getMaxBytes();
+                if (!expired && !overRows && !overBytes) {
+                    break;
+                }
+                drop(oldest);
+                deleted += oldest.rows;
+            }
+            return new ChunkedRetention.Result(deleted, entries, usedBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to drop CloudEvent segment", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(CloudEventRecord record, byte[] payload) throws IOException {
+        long id = record.getId();
+        int length = HEADER_BYTES + payload.length;
+
+        Segment active = segments.get(segments.size() - 1);
+        if (active.position + length > active.buffer.capacity()) {
+            active.buffer.force();
+            active = Segment.open(segmentPath(active.ordinal + 1), active.ordinal + 1, segmentSize);
+            segments.add(active);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int offset = active.position;
+        active.buffer.putInt(offset, payload.length)
+                .putInt(offset + 4, (int) crc.getValue())
+                .put(offset + HEADER_BYTES, payload);
+        // Terminate the log so a torn tail from before a restart is not read back as records
+        if (offset + length + 4 <= active.buffer.capacity()) {
+            active.buffer.putInt(offset + length, 0);
+        }
+
+        long timestamp = epochNanos(record.getTimestamp());
+        insert(timestamp, id, location(active.ordinal, offset));
+        active.position += length;
+        active.rows++;
+        active.newestTimestamp = Math.max(active.newestTimestamp, timestamp);
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    // Rebuilds the index from a segment and stops at the first torn or empty record
+    private void recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Ignoring torn record in {} at offset {}", segment.path.getFileName(), position);
+                break;
+            }
+            long id = buffer.getLong(position + HEADER_BYTES);
+            long timestamp = buffer.getLong(position + HEADER_BYTES + 8);
+            insert(timestamp, id, location(segment.ordinal, position));
+            segment.rows++;
+            segment.newestTimestamp = Math.max(segment.newestTimestamp, timestamp);
+            nextId = Math.max(nextId, id + 1);
+            position += HEADER_BYTES + length;
+        }
+        if (position + 4 <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+        segment.position = position;
+    }
+
+    private void drop(Segment segment) throws IOException {
+        segments.remove(0);
+        int kept = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            int base = entry * INDEX_STRIDE;
+            if ((int) (index[base + 2] >>> 32) != segment.ordinal) {
+                System.arraycopy(index, base, index, kept * INDEX_STRIDE, INDEX_STRIDE);
+                kept++;
+            }
+        }
+        entries = kept;
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        logger.info("Dropped CloudEvent segment {} ({} events)", segment.path.getFileName(), segment.rows);
+    }
+
+    private List<CloudEventRecord> readDescending(int from, int limit) {
+        List<CloudEventRecord> rows = new ArrayList<>(Math.min(limit, entries));
+        for (int entry = from; entry >= 0 && rows.size() < limit; entry--) {
+            rows.add(read(index[entry * INDEX_STRIDE + 2]));
+        }
+        return rows;
+    }
+
+    // Decodes a record directly from the mapped segment
+    private CloudEventRecord read(long location) {
+        int ordinal = (int) (location >>> 32);
+        Segment segment = segments.get(ordinal - segments.get(0).ordinal);
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position((int) location + HEADER_BYTES);
+
+        long id = buffer.getLong();
+        long timestamp = buffer.getLong();
+        ZoneId zone = ZoneId.of(readString(buffer));
+        CloudEventRecord record = new CloudEventRecord();
+        record.setId(id);
+        record.setTimestamp(Instant.ofEpochSecond(Math.floorDiv(timestamp, NANOS_PER_SECOND),
+                Math.floorMod(timestamp, NANOS_PER_SECOND)).atZone(zone));
+        record.setEventId(readString(buffer));
+        record.setEventType(readString(buffer));
+        record.setSource(readString(buffer));
+        record.setSubject(readString(buffer));
+        record.setData(readString(buffer));
+        return record;
+    }
+
+    private static byte[] encode(CloudEventRecord record) {
+        byte[][] strings = {
+            utf8(record.getTimestamp().getZone().getId()),
+            utf8(record.getEventId()),
+            utf8(record.getEventType()),
+            utf8(record.getSource()),
+            utf8(record.getSubject()),
+            utf8(record.getData())
+        };
+        int size = 16;
+        for (byte[] string : strings) {
+            size += 4 + (string == null ? 0 : string.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(record.getId()).putLong(epochNanos(record.getTimestamp()));
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private void insert(long timestamp, long id, long location) {
+        // Events mostly arrive in time order, so this is nearly always an append
+        int at = upperBound(timestamp, id);
+        if ((entries + 1) * INDEX_STRIDE > index.length) {
+            index = Arrays.copyOf(index, index.length + index.length / 2);
+        }
+        System.arraycopy(index, at * INDEX_STRIDE, index, (at + 1) * INDEX_STRIDE, (entries - at) * INDEX_STRIDE);
+        int base = at * INDEX_STRIDE;
+        index[base] = timestamp;
+        index[base + 1] = id;
+        index[base + 2] = location;
+        entries++;
+    }
+
+    // First entry at or after (timestamp, id)
+    private int lowerBound(long timestamp, long id) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, timestamp, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First entry strictly after (timestamp, id)
+    private int upperBound(long timestamp, long id) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, timestamp, id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int entry, long timestamp, long id) {
+        int base = entry * INDEX_STRIDE;
+        int byTime = Long.compare(index[base], timestamp);
+        return byTime != 0 ? byTime : Long.compare(index[base + 1], id);
+    }
+
+    private long usedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.position;
+        }
+        return bytes;
+    }
+
+    private static long location(int ordinal, int offset) {
+        return ((long) ordinal << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static long epochNanos(ZonedDateTime timestamp) {
+        Instant instant = timestamp.toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    private static int ordinalOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+    }
+
+    private Path segmentPath(int ordinal) {
+        return directory.resolve(String.format("segment-%010d.seg", ordinal));
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final int ordinal;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long rows;
+        private long newestTimestamp = Long.MIN_VALUE;
+
+        private Segment(Path path, int ordinal, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.ordinal = ordinal;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // Existing segments are mapped at their current size; new ones are created at segmentSize
+        static Segment open(Path path, int ordinal, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = channel.size() > 0 ? channel.size() : segmentSize;
+            return new Segment(path, ordinal, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+}
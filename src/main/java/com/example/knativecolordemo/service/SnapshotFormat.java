@@ -0,0 +1,231 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzipped binary snapshot of the color_changes and cloud_events tables.
+ *
+ * Layout: {@code [int magic][int version][int n][n x UTF color name]}, then sections, each a tag byte
+ * followed by records prefixed with {@code 1} and closed by {@code 0}; a {@code 0} tag ends the file.
+ * Colors are written as indexes into the name table, so reordering the enum does not break old files.
+ * Timestamps are epoch seconds, nanos and offset seconds; strings are a UTF-8 byte count (-1 for null)
+ * and the bytes. Ids are kept so a loaded replica pages with the same cursors as its peer.
+ *
+ * Readers do not trust the counts in the stream: a string longer than {@link #MAX_STRING_BYTES} or a
+ * color table that could not have been written fails the read instead of sizing an allocation.
+ */
+public final class SnapshotFormat {
+
+    private static final int MAGIC = 0x4B434453;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Colors are written as one unsigned byte
+    private static final int MAX_COLORS = 256;
+    static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    private static final byte END = 0;
+    private static final byte RECORD = 1;
+    private static final byte COLOR_CHANGES = 1;
+    private static final byte CLOUD_EVENTS = 2;
+
+    private SnapshotFormat() {
+    }
+
+    public static final class Writer {
+
+        private final GZIPOutputStream gzip;
+        private final DataOutputStream out;
+        private boolean inSection;
+
+        public Writer(OutputStream target) throws IOException {
+            // Favour speed: the payloads are repetitive JSON and compress well even at the lowest level
+            gzip = new GZIPOutputStream(target, BUFFER_BYTES) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            out = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ColorChange.Color[] colors = ColorChange.Color.values();
+            out.writeInt(colors.length);
+            for (ColorChange.Color color : colors) {
+                out.writeUTF(color.name());
+            }
+        }
+
+        public void beginColorChanges() throws IOException {
+            beginSection(COLOR_CHANGES);
+        }
+
+        public void writeColorChange(long id, ColorChange.Color color, OffsetDateTime timestamp, String source)
+                throws IOException {
+            out.writeByte(RECORD);
+            out.writeLong(id);
+            out.writeByte(color.ordinal());
+            writeTimestamp(timestamp);
+            writeString(source);
+        }
+
+        public void beginCloudEvents() throws IOException {
+            beginSection(CLOUD_EVENTS);
+        }
+
+        public void writeCloudEvent(CloudEventRecord record) throws IOException {
+            out.writeByte(RECORD);
+            out.writeLong(record.getId());
+            writeString(record.getEventId());
+            writeString(record.getEventType());
+            writeString(record.getSource());
+            writeTimestamp(record.getTimestamp().toOffsetDateTime());
+            writeString(record.getSubject());
+            writeString(record.getData());
+        }
+
+        /**
+         * Ends the snapshot and flushes it without closing the target stream.
+         */
+        public void finish() throws IOException {
+            endSection();
+            out.writeByte(END);
+            out.flush();
+            gzip.finish();
+        }
+
+        private void beginSection(byte tag) throws IOException {
+            endSection();
+            out.writeByte(tag);
+            inSection = true;
+        }
+
+        private void endSection() throws IOException {
+            if (inSection) {
+                out.writeByte(END);
+                inSection = false;
+            }
+        }
+
+        private void writeTimestamp(OffsetDateTime timestamp) throws IOException {
+            Instant instant = timestamp.toInstant();
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+            out.writeInt(timestamp.getOffset().getTotalSeconds());
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a whole snapshot, handing each record to the matching consumer in file order.
+     *
+     * @throws IOException if the stream is not a snapshot, is truncated or corrupt, or names an unknown color
+     */
+    public static void read(InputStream source, Consumer<ColorChange> colorChanges,
+                            Consumer<CloudEventRecord> cloudEvents) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, BUFFER_BYTES), BUFFER_BYTES));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a color demo snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int colorCount = in.readInt();
+        if (colorCount < 0 || colorCount > MAX_COLORS) {
+            throw new IOException("Invalid snapshot color table size " + colorCount);
+        }
+        ColorChange.Color[] colors = new ColorChange.Color[colorCount];
+        for (int i = 0; i < colors.length; i++) {
+            String name = in.readUTF();
+            try {
+                colors[i] = ColorChange.Color.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Snapshot uses unknown color " + name, e);
+            }
+        }
+
+        byte section;
+        while ((section = in.readByte()) != END) {
+            while (in.readByte() == RECORD) {
+                switch (section) {
+                    case COLOR_CHANGES -> colorChanges.accept(readColorChange(in, colors));
+                    case CLOUD_EVENTS -> cloudEvents.accept(readCloudEvent(in));
+                    default -> throw new IOException("Unknown snapshot section " + section);
+                }
+            }
+        }
+    }
+
+    private static ColorChange readColorChange(DataInputStream in, ColorChange.Color[] colors) throws IOException {
+        long id = in.readLong();
+        int color = in.readUnsignedByte();
+        if (color >= colors.length) {
+            throw new IOException("Color index " + color + " outside the snapshot color table");
+        }
+        ColorChange colorChange = new ColorChange(colors[color], readTimestamp(in).toZonedDateTime(), readString(in));
+        colorChange.setId(id);
+        return colorChange;
+    }
+
+    private static CloudEventRecord readCloudEvent(DataInputStream in) throws IOException {
+        CloudEventRecord record = new CloudEventRecord();
+        record.setId(in.readLong());
+        record.setEventId(readString(in));
+        record.setEventType(readString(in));
+        record.setSource(readString(in));
+        record.setTimestamp(readTimestamp(in).toZonedDateTime());
+        record.setSubject(readString(in));
+        record.setData(readString(in));
+        return record;
+    }
+
+    private static OffsetDateTime readTimestamp(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        int offset = in.readInt();
+        try {
+            return OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneOffset.ofTotalSeconds(offset));
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new IOException("Invalid snapshot timestamp", e);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid snapshot string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.repository.ColorChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports both tables as a {@link SnapshotFormat} stream and seeds an empty replica from one.
+ *
+ * With {@code snapshot.source} set to a file or a peer's {@code /api/snapshot} URL, the snapshot is loaded
+ * once all beans exist and before the web server starts taking requests. Rows are inserted with their
+ * original ids in JDBC batches; the sequences are then moved past them and the in-memory views
+ * (current color, statistics, delta versions) are rebuilt.
+ */
+@Service
+public class SnapshotService implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
+
+    private static final String COLOR_SCAN_SQL = "SELECT id, color, timestamp, source FROM color_changes ORDER BY timestamp, id";
+    private static final String COLOR_INSERT_SQL = "INSERT INTO color_changes (id, color, timestamp, source) VALUES (?, ?, ?, ?)";
+
+    // The pooled optimizer hands out the block below the value it reads, so restart one allocation past the max
+    private static final int SEQUENCE_HEADROOM = 51;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CloudEventStore cloudEventStore;
+
+    @Autowired
+    private ColorChangeRepository colorChangeRepository;
+
+    @Autowired
+    private ColorService colorService;
+
+    @Autowired
+    private ColorStatsAggregator colorStatsAggregator;
+
+    @Value("${snapshot.source:}")
+    private String source;
+
+    @Value("${snapshot.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${snapshot.timeout:PT10S}")
+    private Duration timeout;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (source.isBlank()) {
+            return;
+        }
+        if (colorChangeRepository.count() > 0 || !cloudEventStore.findNewest(1).isEmpty()) {
+            logger.info("Not loading snapshot from {}: the store already holds data", source);
+            return;
+        }
+        long start = System.nanoTime();
+        try (InputStream in = open(source)) {
+            Result result = load(in);
+            logger.info("Loaded {} color changes and {} CloudEvents from {} in {} ms", result.colorChanges(),
+                    result.cloudEvents(), source, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (IOException | RuntimeException e) {
+            // A replica without history is still useful; keep starting
+            logger.warn("Starting without snapshot from {}: {}", source, e.toString());
+        }
+    }
+
+    /**
+     * Writes both tables, oldest first. The target stream is left open.
+     */
+    public Result export(OutputStream target) throws IOException {
+        SnapshotFormat.Writer writer = new SnapshotFormat.Writer(target);
+        long[] counts = new long[2];
+        try {
+            writer.beginColorChanges();
+            jdbcTemplate.query(COLOR_SCAN_SQL, (RowCallbackHandler) rs -> {
+                try {
+                    writer.writeColorChange(rs.getLong("id"), ColorChange.Color.valueOf(rs.getString("color")),
+                            rs.getObject("timestamp", OffsetDateTime.class), rs.getString("source"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counts[0]++;
+            });
+
+            writer.beginCloudEvents();
+            cloudEventStore.scan(record -> {
+                try {
+                    writer.writeCloudEvent(record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counts[1]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        return new Result(counts[0], counts[1]);
+    }
+
+    /**
+     * Inserts every row of the snapshot; the tables are expected to be empty. Batches are committed as they
+     * are read, so if the snapshot turns out to be truncated or unreadable both stores are emptied again
+     * before the exception is rethrown. In-memory views are rebuilt either way.
+     */
+    public Result load(InputStream snapshot) throws IOException {
+        List<ColorChange> colorChanges = new ArrayList<>(batchSize);
+        List<CloudEventRecord> cloudEvents = new ArrayList<>(batchSize);
+        long[] counts = new long[2];
+        try {
+            SnapshotFormat.read(snapshot, colorChange -> {
+                colorChanges.add(colorChange);
+                counts[0]++;
+                if (colorChanges.size() >= batchSize) {
+                    insertColorChanges(colorChanges);
+                }
+            }, record -> {
+                cloudEvents.add(record);
+                counts[1]++;
+                if (cloudEvents.size() >= batchSize) {
+                    cloudEventStore.load(cloudEvents);
+                    cloudEvents.clear();
+                }
+            });
+            insertColorChanges(colorChanges);
+            if (!cloudEvents.isEmpty()) {
+                cloudEventStore.load(cloudEvents);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A partial history would pass for a complete one; start empty instead
+            clear();
+            throw e;
+        } finally {
+            restartSequence(jdbcTemplate, "color_changes", "color_changes_seq");
+            cloudEventStore.finishLoad();
+            colorService.reload();
+            colorStatsAggregator.rebuild();
+        }
+        return new Result(counts[0], counts[1]);
+    }
+
+    private void clear() {
+        jdbcTemplate.execute("TRUNCATE TABLE color_changes");
+        cloudEventStore.clear();
+    }
+
+    static void restartSequence(JdbcTemplate jdbcTemplate, String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (maxId + SEQUENCE_HEADROOM));
+    }
+
+    private void insertColorChanges(List<ColorChange> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(COLOR_INSERT_SQL, batch, batch.size(), (ps, colorChange) -> {
+            ps.setLong(1, colorChange.getId());
+            ps.setString(2, colorChange.getColor().name());
+            ps.setObject(3, colorChange.getTimestamp().toOffsetDateTime());
+            ps.setString(4, colorChange.getSource());
+        });
+        batch.clear();
+    }
+
+    private InputStream open(String location) throws IOException {
+        if (!location.startsWith("http://") && !location.startsWith("https://")) {
+            return Files.newInputStream(Path.of(location));
+        }
+        HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(location)).timeout(timeout).GET().build();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IOException("Snapshot peer answered " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching snapshot", e);
+        }
+    }
+
+    public record Result(long colorChanges, long cloudEvents) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.knativecolordemo.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive (AIMD) concurrency limit for CloudEvent deliveries on {@code POST /cloudevents}.
+ *
+ * Deliveries over the limit are answered at once with 429 and {@code Retry-After}, so a broker burst is
+ * spread out by Knative's delivery retries instead of queueing in Tomcat. Each delivery is timed until its
+ * response completes, including the async commit ack. While deliveries finish within
+ * {@code cloudevents.limiter.latency-threshold} and the limit is in use, it grows by about one per round trip;
+ * a slower delivery, or a 429/5xx from the sink itself, cuts it by {@code backoff-ratio}, at most once per
+ * round trip. {@link ConcurrencyLimitFilter} leaves these deliveries to this filter, so its fixed waits and 503s
+ * do not drive the limit down.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class AdaptiveConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    // Guards limit updates; limit is read without the lock when admitting requests
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private long lastDecreaseNanos;
+
+    @Autowired
+    public AdaptiveConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                          @Value("${cloudevents.limiter.enabled:true}") boolean enabled,
+                                          @Value("${cloudevents.limiter.initial-limit:20}") int initialLimit,
+                                          @Value("${cloudevents.limiter.min-limit:2}") int minLimit,
+                                          @Value("${cloudevents.limiter.max-limit:500}") int maxLimit,
+                                          @Value("${cloudevents.limiter.latency-threshold:PT0.25S}") Duration latencyThreshold,
+                                          @Value("${cloudevents.limiter.backoff-ratio:0.9}") double backoffRatio) {
+        this(meterRegistry, enabled, initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimitFilter(MeterRegistry meterRegistry, boolean enabled, int initialLimit, int minLimit,
+                                   int maxLimit, Duration latencyThreshold, double backoffRatio, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("cloudevents.limiter.limit", this, filter -> Math.floor(filter.limit)).register(meterRegistry);
+        Gauge.builder("cloudevents.limiter.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        rejected = Counter.builder("cloudevents.limiter.rejected").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !"/cloudevents".equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!tryAcquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Concurrency limit of " + getLimit() + " reached");
+            return;
+        }
+
+        long start = nanoClock.getAsLong();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // The sink acks from a future: hold the slot until the response is actually sent
+                request.getAsyncContext().addListener(new Release(start, response));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                release(start, response.getStatus());
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(long start, int status) {
+        long now = nanoClock.getAsLong();
+        int concurrent = inFlight.getAndDecrement();
+        boolean overloaded = now - start > latencyThresholdNanos
+                || status == HttpStatus.TOO_MANY_REQUESTS.value() || status >= 500;
+
+        lock.lock();
+        try {
+            if (overloaded) {
+                // Deliveries started before the last cut saw the old limit; one cut per round trip
+                if (start - lastDecreaseNanos > 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (concurrent * 2 >= limit) {
+                // Only grow when the limit is what bounds concurrency, not when traffic is light
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Release implements AsyncListener {
+
+        private final long start;
+        private final HttpServletResponse response;
+
+        private Release(long start, HttpServletResponse response) {
+            this.start = start;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(start, response.getStatus());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // onComplete follows and releases the slot
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // onComplete follows and releases the slot
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -1,12 +1,21 @@
 // Global variables
 let currentColor = null;
 let refreshInterval = null;
+let historyNextCursor = null;
+let eventsNextCursor = null;
+// Versions of the last full load or delta; polls ask for what was published since
+let historyVersion = null;
+let eventsVersion = null;
+let eventStream = null;
+
+const PAGE_SIZE = 50;
+const OVERVIEW_BUCKET = 'PT1M';
 
 // Initialize the application
 document.addEventListener('DOMContentLoaded', function() {
     loadAvailableColors();
     refreshAll();
-    startAutoRefresh();
+    connectStream();
     updateCurrentTime();
     setInterval(updateCurrentTime, 1000);
 });
@@ -58,7 +67,9 @@ async function setColor() {
 
         if (response.ok) {
             showNotification(`Color set to ${color}`, 'success');
-            refreshAll();
+            if (!eventStream || eventStream.readyState !== EventSource.OPEN) {
+                refreshAll();
+            }
             select.value = '';
         } else {
             showNotification('Error setting color', 'error');
@@ -78,35 +89,195 @@ function refreshAll() {
 // Refresh timeline
 async function refreshTimeline() {
     try {
+        if (historyVersion !== null && await applyTimelineDelta()) {
+            return;
+        }
         const [currentResponse, historyResponse] = await Promise.all([
             fetch('/api/colors/current'),
-            fetch('/api/colors/history')
+            fetch(`/api/colors/history?limit=${PAGE_SIZE}`)
         ]);
 
         const current = await currentResponse.json();
-        const history = await historyResponse.json();
+        const page = await historyResponse.json();
 
         currentColor = current;
         updateCurrentColorBadge(current);
-        renderTimeline(history);
+        historyNextCursor = page.nextCursor;
+        historyVersion = versionOf(historyResponse);
+        renderTimeline(page.items, false);
+        refreshOverview();
     } catch (error) {
         console.error('Error refreshing timeline:', error);
         showNotification('Error loading timeline data', 'error');
     }
 }
 
+// Adds changes published since the last poll; false when the server asks for a full reload
+async function applyTimelineDelta() {
+    const response = await fetch(`/api/colors/history?since=${historyVersion}&limit=${PAGE_SIZE}`);
+    const delta = await response.json();
+    if (delta.reset) {
+        return false;
+    }
+    historyVersion = delta.version;
+    if (delta.items.length > 0) {
+        delta.items.forEach(change => prependItem('timeline-container', timelineItemHtml(change), change.id));
+        currentColor = delta.items[delta.items.length - 1];
+        updateCurrentColorBadge(currentColor);
+        refreshOverview();
+    }
+    return true;
+}
+
+// Last hour downsampled server-side, so the strip costs the same however often the color changes
+async function refreshOverview() {
+    try {
+        const response = await fetch(`/api/colors/history?bucket=${OVERVIEW_BUCKET}`);
+        const timeline = await response.json();
+        renderOverview(timeline.buckets);
+    } catch (error) {
+        console.error('Error refreshing overview:', error);
+    }
+}
+
+function renderOverview(buckets) {
+    const container = document.getElementById('timeline-overview');
+    container.innerHTML = buckets.map(bucket => {
+        const colorClass = bucket.color ? `color-${bucket.color.toLowerCase()}` : '';
+        const transitionClass = bucket.transitions > 0 ? 'has-transitions' : '';
+        const title = `${formatDateTime(new Date(bucket.start))}: ${bucket.color || 'none'}, ${bucket.transitions} transitions`;
+        return `<div class="timeline-overview-bucket ${colorClass} ${transitionClass}" title="${title}"></div>`;
+    }).join('');
+}
+
 // Refresh events
 async function refreshEvents() {
     try {
-        const response = await fetch('/api/events');
-        const events = await response.json();
-        renderEvents(events);
+        if (eventsVersion !== null && await applyEventsDelta()) {
+            return;
+        }
+        const response = await fetch(`/api/events?limit=${PAGE_SIZE}`);
+        const page = await response.json();
+        eventsNextCursor = page.nextCursor;
+        eventsVersion = versionOf(response);
+        renderEvents(page.items, false);
     } catch (error) {
         console.error('Error refreshing events:', error);
         showNotification('Error loading events data', 'error');
     }
 }
 
+async function applyEventsDelta() {
+    const response = await fetch(`/api/events?since=${eventsVersion}&limit=${PAGE_SIZE}`);
+    const delta = await response.json();
+    if (delta.reset) {
+        return false;
+    }
+    eventsVersion = delta.version;
+    delta.items.forEach(event => prependItem('events-container', eventItemHtml(event), event.id));
+    return true;
+}
+
+// The list endpoints send their version as the ETag
+function versionOf(response) {
+    const etag = response.headers.get('ETag');
+    return etag ? etag.replace(/^W\//, '').replace(/"/g, '') : null;
+}
+
+// Load the next (older) page of the timeline
+async function loadMoreTimeline() {
+    if (!historyNextCursor) {
+        return;
+    }
+    try {
+        const response = await fetch(`/api/colors/history?limit=${PAGE_SIZE}&before=${encodeURIComponent(historyNextCursor)}`);
+        const page = await response.json();
+        historyNextCursor = page.nextCursor;
+        renderTimeline(page.items, true);
+    } catch (error) {
+        console.error('Error loading more timeline data:', error);
+        showNotification('Error loading timeline data', 'error');
+    }
+}
+
+// Load the next (older) page of events
+async function loadMoreEvents() {
+    if (!eventsNextCursor) {
+        return;
+    }
+    try {
+        const response = await fetch(`/api/events?limit=${PAGE_SIZE}&before=${encodeURIComponent(eventsNextCursor)}`);
+        const page = await response.json();
+        eventsNextCursor = page.nextCursor;
+        renderEvents(page.items, true);
+    } catch (error) {
+        console.error('Error loading more events:', error);
+        showNotification('Error loading events data', 'error');
+    }
+}
+
+// Subscribe to pushed updates; falls back to polling while the stream is down
+function connectStream() {
+    if (!window.EventSource) {
+        startAutoRefresh();
+        return;
+    }
+
+    let reconnecting = false;
+    eventStream = new EventSource('/api/stream');
+
+    eventStream.onopen = () => {
+        stopAutoRefresh();
+        if (reconnecting) {
+            // Catch up on anything missed while disconnected
+            refreshAll();
+            reconnecting = false;
+        }
+    };
+
+    eventStream.onerror = () => {
+        // EventSource reconnects on its own; poll in the meantime
+        reconnecting = true;
+        startAutoRefresh();
+    };
+
+    eventStream.addEventListener('current', (message) => {
+        currentColor = JSON.parse(message.data);
+        updateCurrentColorBadge(currentColor);
+    });
+
+    eventStream.addEventListener('color', (message) => {
+        const change = JSON.parse(message.data);
+        currentColor = change;
+        updateCurrentColorBadge(change);
+        prependItem('timeline-container', timelineItemHtml(change), change.id);
+    });
+
+    // Recorded out of order, older than the current color: only the timeline changes
+    eventStream.addEventListener('history', (message) => {
+        const change = JSON.parse(message.data);
+        prependItem('timeline-container', timelineItemHtml(change), change.id);
+    });
+
+    eventStream.addEventListener('cloudevent', (message) => {
+        const event = JSON.parse(message.data);
+        prependItem('events-container', eventItemHtml(event), event.id);
+    });
+}
+
+function prependItem(containerId, html, id) {
+    const container = document.getElementById(containerId);
+    // The stream and a catch-up poll can both deliver the same row
+    if (id != null && container.querySelector(`[data-id="${id}"]`)) {
+        return;
+    }
+    // Drop the "nothing yet" placeholder before adding the first item
+    if (!container.querySelector('.timeline-item, .event-item')) {
+        container.innerHTML = '';
+    }
+    container.insertAdjacentHTML('afterbegin', html);
+}
+
 // Update current color badge
 function updateCurrentColorBadge(colorChange) {
     const badge = document.getElementById('current-color-badge');
@@ -119,70 +290,89 @@ function updateCurrentColorBadge(colorChange) {
     `;
 }
 
-// Render timeline
-function renderTimeline(history) {
+// Render timeline; append adds an older page below the current items
+function renderTimeline(history, append) {
     const container = document.getElementById('timeline-container');
+    updateLoadMoreButton('timeline-load-more', historyNextCursor);
 
-    if (history.length === 0) {
+    if (!append && history.length === 0) {
         container.innerHTML = '<div class="text-center text-muted">No color changes yet</div>';
         return;
     }
 
-    let html = '';
-    history.forEach((change, index) => {
-        const colorClass = `color-${change.color.toLowerCase()}`;
-        const timeFormatted = formatDateTime(new Date(change.timestamp));
-        const timeAgo = getTimeAgo(new Date(change.timestamp));
-        const colorName = change.color.charAt(0) + change.color.slice(1).toLowerCase();
-
-        html += `
-            <div class="timeline-item">
-                <div class="timeline-dot ${colorClass}"></div>
-                <div class="timeline-content">
-                    <div class="timeline-time">${timeFormatted} (${timeAgo})</div>
-                    <div><strong>${colorName}</strong></div>
-                    <div class="timeline-source">Source: ${change.source}</div>
-                </div>
-            </div>
-        `;
-    });
+    const html = history.map(timelineItemHtml).join('');
+    if (append) {
+        container.insertAdjacentHTML('beforeend', html);
+    } else {
+        container.innerHTML = html;
+    }
+}
 
-    container.innerHTML = html;
+function timelineItemHtml(change) {
+    const colorClass = `color-${change.color.toLowerCase()}`;
+    const timeFormatted = formatDateTime(new Date(change.timestamp));
+    const timeAgo = getTimeAgo(new Date(change.timestamp));
+    const colorName = change.color.charAt(0) + change.color.slice(1).toLowerCase();
+
+    return `
+        <div class="timeline-item" data-id="${change.id}">
+            <div class="timeline-dot ${colorClass}"></div>
+            <div class="timeline-content">
+                <div class="timeline-time">${timeFormatted} (${timeAgo})</div>
+                <div><strong>${colorName}</strong></div>
+                <div class="timeline-source">Source: ${change.source}</div>
+            </div>
+        </div>
+    `;
 }
 
-// Render events
-function renderEvents(events) {
+// Render events; append adds an older page below the current items
+function renderEvents(events, append) {
     const container = document.getElementById('events-container');
+    updateLoadMoreButton('events-load-more', eventsNextCursor);
 
-    if (events.length === 0) {
+    if (!append && events.length === 0) {
         container.innerHTML = '<div class="text-center text-muted">No events received yet</div>';
         return;
     }
 
-    let html = '';
-    events.forEach(event => {
-        const timeFormatted = formatDateTime(new Date(event.timestamp));
-        const timeAgo = getTimeAgo(new Date(event.timestamp));
-
-        html += `
-            <div class="event-item">
-                <div class="event-header">
-                    <div class="event-type">${event.eventType}</div>
-                    <div class="event-time">${timeAgo}</div>
-                </div>
-                <div class="event-source">Source: ${event.source}</div>
-                <div class="event-id">ID: ${event.eventId}</div>
-                ${event.subject ? `<div class="event-subject">Subject: ${event.subject}</div>` : ''}
-                ${event.data ? `<div class="event-data">${event.data}</div>` : ''}
+    const html = events.map(eventItemHtml).join('');
+    if (append) {
+        container.insertAdjacentHTML('beforeend', html);
+    } else {
+        container.innerHTML = html;
+    }
+}
+
+function eventItemHtml(event) {
+    const timeAgo = getTimeAgo(new Date(event.timestamp));
+
+    return `
+        <div class="event-item" data-id="${event.id}">
+            <div class="event-header">
+                <div class="event-type">${event.eventType}</div>
+                <div class="event-time">${timeAgo}</div>
             </div>
-        `;
-    });
+            <div class="event-source">Source: ${event.source}</div>
+            <div class="event-id">ID: ${event.eventId}</div>
+            ${event.subject ? `<div class="event-subject">Subject: ${event.subject}</div>` : ''}
+            ${event.data ? `<div class="event-data">${event.data}</div>` : ''}
+        </div>
+    `;
+}
 
-    container.innerHTML = html;
+function updateLoadMoreButton(id, cursor) {
+    const button = document.getElementById(id);
+    if (button) {
+        button.classList.toggle('d-none', !cursor);
+    }
 }
 
 // Auto-refresh functionality
 function startAutoRefresh() {
+    if (refreshInterval) {
+        return;
+    }
     // Refresh every 5 seconds
     refreshInterval = setInterval(refreshAll, 5000);
 }
@@ -0,0 +1,87 @@
+package com.example.knativecolordemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "outbox.dir=target/test-outbox/batch",
+        "cloudevents.ingest.queue-capacity=2",
+        "cloudevents.batch.max-events=3"
+})
+@AutoConfigureMockMvc
+class CloudEventBatchSinkTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void answersEachElementInOrder() throws Exception {
+        String id = UUID.randomUUID().toString();
+
+        sendBatch("[" + event(id, "test-source") + ",{\"id\":\"not-an-event\"}," + event(id, "test-source") + "]")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value(202))
+                .andExpect(jsonPath("$[1].status").value(400))
+                .andExpect(jsonPath("$[1].error").exists())
+                // Repeated within the batch: answered by the duplicate filter
+                .andExpect(jsonPath("$[2].id").value(id))
+                .andExpect(jsonPath("$[2].status").value(202));
+    }
+
+    @Test
+    void rejectsBatchOverMaxEvents() throws Exception {
+        sendBatch("[" + event(UUID.randomUUID().toString(), "s") + "," + event(UUID.randomUUID().toString(), "s") + ","
+                + event(UUID.randomUUID().toString(), "s") + "," + event(UUID.randomUUID().toString(), "s") + "]")
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void rejectsBatchTheQueueCannotTake() throws Exception {
+        sendBatch("[" + event(UUID.randomUUID().toString(), "s") + "," + event(UUID.randomUUID().toString(), "s") + ","
+                + event(UUID.randomUUID().toString(), "s") + "]")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void answers500WhenAnElementCannotBeStored() throws Exception {
+        String stored = UUID.randomUUID().toString();
+        String failed = UUID.randomUUID().toString();
+
+        sendBatch("[" + event(stored, "test-source") + "," + event(failed, "s".repeat(300)) + "]")
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$[0].status").value(202))
+                .andExpect(jsonPath("$[1].id").value(failed))
+                .andExpect(jsonPath("$[1].status").value(500));
+    }
+
+    private ResultActions sendBatch(String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/cloudevents")
+                        .contentType("application/cloudevents-batch+json")
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private static String event(String id, String source) {
+        return "{\"specversion\":\"1.0\",\"id\":\"" + id + "\",\"source\":\"" + source
+                + "\",\"type\":\"com.example.test\",\"datacontenttype\":\"application/json\",\"data\":{}}";
+    }
+}
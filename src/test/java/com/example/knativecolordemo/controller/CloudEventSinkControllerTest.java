@@ -0,0 +1,72 @@
+package com.example.knativecolordemo.controller;
+
+import com.example.knativecolordemo.service.DuplicateEventFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "outbox.dir=target/test-outbox/sink")
+@AutoConfigureMockMvc
+class CloudEventSinkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DuplicateEventFilter duplicateEventFilter;
+
+    @Test
+    void acceptsEvent() throws Exception {
+        send(UUID.randomUUID().toString(), "test-source", "com.example.test", "{}")
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void acknowledgesRedeliveryCaughtByUniqueIndex() throws Exception {
+        String id = UUID.randomUUID().toString();
+        send(id, "test-source", "com.example.test", "{}").andExpect(status().isAccepted());
+
+        // As if the first delivery had aged out of the duplicate cache
+        duplicateEventFilter.forget("test-source", id);
+
+        send(id, "test-source", "com.example.test", "{}").andExpect(status().isAccepted());
+    }
+
+    @Test
+    void failsEventWhoseSourceDoesNotFitItsColumn() throws Exception {
+        send(UUID.randomUUID().toString(), "s".repeat(300), "com.example.test", "{}")
+                .andExpect(status().is5xxServerError());
+    }
+
+    @Test
+    void failsColorChangeWhoseSourceDoesNotFitItsColumn() throws Exception {
+        // The event itself fits, but the color change's "cloudevent:" + source does not
+        send(UUID.randomUUID().toString(), "s".repeat(250), "com.example.color.change", "{\"color\":\"BLUE\"}")
+                .andExpect(status().is5xxServerError());
+    }
+
+    private ResultActions send(String id, String source, String type, String data) throws Exception {
+        MvcResult result = mockMvc.perform(post("/cloudevents")
+                        .header("ce-specversion", "1.0")
+                        .header("ce-id", id)
+                        .header("ce-source", source)
+                        .header("ce-type", type)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(data))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.knativecolordemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "outbox.dir=target/test-outbox/colors")
+@AutoConfigureMockMvc
+class ColorControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void unchangedHistoryIsAnswered304UntilAColorIsSet() throws Exception {
+        String etag = mockMvc.perform(get("/api/colors/history"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        mockMvc.perform(get("/api/colors/history").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        setColor("GREEN");
+
+        mockMvc.perform(get("/api/colors/history").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].color").value("GREEN"));
+    }
+
+    @Test
+    void sinceReturnsChangesAfterTheVersionInTheETag() throws Exception {
+        String etag = mockMvc.perform(get("/api/colors/history"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        long version = Long.parseLong(etag.replace("\"", ""));
+
+        setColor("BLUE");
+        setColor("YELLOW");
+
+        mockMvc.perform(get("/api/colors/history").param("since", Long.toString(version)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].color").value("BLUE"))
+                .andExpect(jsonPath("$.items[1].color").value("YELLOW"))
+                .andExpect(jsonPath("$.version").value(version + 2))
+                .andExpect(jsonPath("$.reset").value(false));
+    }
+
+    @Test
+    void unknownSinceVersionAsksForReload() throws Exception {
+        mockMvc.perform(get("/api/colors/history").param("since", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset").value(true))
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    private void setColor(String color) throws Exception {
+        mockMvc.perform(post("/api/colors/set")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"color\":\"" + color + "\"}"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.DeltaPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeLogTest {
+
+    @Test
+    void versionAdvancesByOnePerItem() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+        long start = log.version();
+
+        log.append(List.of("a", "b"));
+
+        assertThat(log.version()).isEqualTo(start + 2);
+    }
+
+    @Test
+    void sinceReturnsItemsPublishedAfterTheVersionOldestFirst() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+        long start = log.version();
+        log.append(List.of("a", "b", "c"));
+
+        DeltaPage<String> page = log.since(start + 1, 50);
+
+        assertThat(page.getItems()).containsExactly("b", "c");
+        assertThat(page.getVersion()).isEqualTo(start + 3);
+        assertThat(page.isReset()).isFalse();
+    }
+
+    @Test
+    void sinceIsPagedByLimit() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+        long start = log.version();
+        log.append(List.of("a", "b", "c"));
+
+        DeltaPage<String> first = log.since(start, 2);
+        DeltaPage<String> second = log.since(first.getVersion(), 2);
+
+        assertThat(first.getItems()).containsExactly("a", "b");
+        assertThat(second.getItems()).containsExactly("c");
+        assertThat(second.getVersion()).isEqualTo(log.version());
+    }
+
+    @Test
+    void currentVersionIsEmptyWithoutReset() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+        log.append(List.of("a"));
+
+        DeltaPage<String> page = log.since(log.version(), 50);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.isReset()).isFalse();
+    }
+
+    @Test
+    void versionOlderThanTheRingResets() {
+        ChangeLog<String> log = new ChangeLog<>(2);
+        long start = log.version();
+        log.append(List.of("a", "b", "c"));
+
+        DeltaPage<String> page = log.since(start, 50);
+
+        assertThat(page.isReset()).isTrue();
+        assertThat(page.getVersion()).isEqualTo(log.version());
+        assertThat(log.since(start + 1, 50).getItems()).containsExactly("b", "c");
+    }
+
+    @Test
+    void futureVersionFromAnotherProcessResets() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+
+        assertThat(log.since(log.version() + 1000, 50).isReset()).isTrue();
+    }
+
+    @Test
+    void resetInvalidatesEarlierVersions() {
+        ChangeLog<String> log = new ChangeLog<>(10);
+        long start = log.version();
+        log.append(List.of("a"));
+
+        log.reset();
+
+        assertThat(log.since(start, 50).isReset()).isTrue();
+        assertThat(log.since(log.version(), 50).isReset()).isFalse();
+    }
+}
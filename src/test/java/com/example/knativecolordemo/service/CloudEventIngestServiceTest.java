@@ -0,0 +1,104 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "outbox.dir=target/test-outbox/ingest")
+class CloudEventIngestServiceTest {
+
+    @Autowired
+    private CloudEventIngestService ingestService;
+
+    @Autowired
+    private ColorService colorService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void commitsUnitTogetherAndPublishesItsColorChange() throws Exception {
+        String id = UUID.randomUUID().toString();
+        long version = colorService.getVersion();
+
+        List<CompletableFuture<Void>> committed = ingestService.submitAll(List.of(
+                item(UUID.randomUUID().toString(), "test-source", null),
+                item(id, "test-source", ColorChange.Color.PURPLE)));
+
+        await(committed);
+        assertThat(colorService.getVersion()).isEqualTo(version + 1);
+        assertThat(colorService.getColorChangesSince(version, 10).getItems())
+                .extracting(ColorChange::getColor).containsExactly(ColorChange.Color.PURPLE);
+    }
+
+    @Test
+    void failedBatchIsRetriedSoOnlyTheBadEventFails() throws Exception {
+        long version = colorService.getVersion();
+
+        List<CompletableFuture<Void>> committed = ingestService.submitAll(List.of(
+                item(UUID.randomUUID().toString(), "test-source", ColorChange.Color.GREEN),
+                item(UUID.randomUUID().toString(), "s".repeat(300), null),
+                item(UUID.randomUUID().toString(), "test-source", ColorChange.Color.YELLOW)));
+
+        committed.get(0).get(5, TimeUnit.SECONDS);
+        committed.get(2).get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> committed.get(1).get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        // Each color change stored and published once, despite the rolled-back batch attempt
+        assertThat(colorService.getColorChangesSince(version, 10).getItems())
+                .extracting(ColorChange::getColor).containsExactly(ColorChange.Color.GREEN, ColorChange.Color.YELLOW);
+    }
+
+    @Test
+    void redeliveryCaughtByUniqueIndexIsAcknowledgedWithoutApplyingItAgain() throws Exception {
+        String id = UUID.randomUUID().toString();
+        await(ingestService.submitAll(List.of(item(id, "test-source", ColorChange.Color.ORANGE))));
+        long version = colorService.getVersion();
+        double before = meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "database").count();
+
+        await(ingestService.submitAll(List.of(item(id, "test-source", ColorChange.Color.ORANGE))));
+
+        assertThat(colorService.getVersion()).isEqualTo(version);
+        assertThat(meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "database").count())
+                .isEqualTo(before + 1);
+    }
+
+    @Test
+    void onlyTheUniqueEventIndexCountsAsDuplicate() {
+        assertThat(CloudEventIngestService.isDuplicateEvent(violation(CloudEventRecord.UNIQUE_EVENT_CONSTRAINT))).isTrue();
+        assertThat(CloudEventIngestService.isDuplicateEvent(violation("PUBLIC.UK_CLOUD_EVENTS_EVENT_ID_SOURCE_INDEX_8"))).isTrue();
+        assertThat(CloudEventIngestService.isDuplicateEvent(violation("uk_other"))).isFalse();
+        assertThat(CloudEventIngestService.isDuplicateEvent(new DataIntegrityViolationException("Value too long"))).isFalse();
+    }
+
+    private static RuntimeException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Unique index or primary key violation", new SQLException(), constraint));
+    }
+
+    private static void await(List<CompletableFuture<Void>> committed) throws Exception {
+        CompletableFuture.allOf(committed.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    private static CloudEventIngestService.Item item(String id, String source, ColorChange.Color color) {
+        CloudEventRecord record = new CloudEventRecord(id, "com.example.color.change", source, ZonedDateTime.now(),
+                "{}", null);
+        ColorChange colorChange = color != null ? new ColorChange(color, ZonedDateTime.now(), "cloudevent:" + source) : null;
+        return new CloudEventIngestService.Item(record, colorChange);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.knativecolordemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudEventMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CloudEventMetrics metrics = new CloudEventMetrics(meterRegistry, 2);
+
+    @Test
+    void foldsTagValuesPastTheCapIntoOther() {
+        long start = System.nanoTime();
+        metrics.recordPublish("type-a", "source", "202", start);
+        metrics.recordPublish("type-b", "source", "202", start);
+        metrics.recordPublish("type-c", "source", "202", start);
+        metrics.recordPublish("type-d", "source", "202", start);
+
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", "type-a").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", "type-b").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("broker.publish.latency").tag("type", CloudEventMetrics.OTHER).timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.find("broker.publish.latency").tag("type", "type-c").timer()).isNull();
+    }
+
+    @Test
+    void keepsValuesSeenBeforeTheCapWasReached() {
+        long start = System.nanoTime();
+        metrics.recordPersisted("type-a", "source-a", start);
+        metrics.recordPersisted("type-b", "source-a", start);
+        metrics.recordPersisted("type-c", "source-a", start);
+        metrics.recordPersisted("type-a", "source-a", start);
+
+        assertThat(meterRegistry.get("cloudevents.persist.latency").tag("type", "type-a").timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("cloudevents.persist.latency").tag("type", CloudEventMetrics.OTHER)
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsMissingValuesAsOther() {
+        metrics.recordPublish(null, null, "error", System.nanoTime());
+
+        assertThat(meterRegistry.get("broker.publish.latency")
+                .tag("type", CloudEventMetrics.OTHER)
+                .tag("source", CloudEventMetrics.OTHER)
+                .timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorTimeline;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorDownsamplerTest {
+
+    private static final ZonedDateTime FROM = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final long FROM_MILLIS = FROM.toInstant().toEpochMilli();
+    private static final long BUCKET = 1_000;
+    private static final int BUCKETS = 4;
+    private static final ZonedDateTime TO = FROM.plusSeconds(BUCKETS);
+    private static final long TO_MILLIS = TO.toInstant().toEpochMilli();
+
+    @Test
+    void bucketsStartAtFromInUtc() {
+        ColorTimeline timeline = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, ColorChange.Color.RED)
+                .finish(FROM, TO, TO_MILLIS);
+
+        assertThat(timeline.getBucketMillis()).isEqualTo(BUCKET);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getStart)
+                .containsExactly(FROM, FROM.plusSeconds(1), FROM.plusSeconds(2), FROM.plusSeconds(3));
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getColor)
+                .containsOnly(ColorChange.Color.RED);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getTransitions).containsOnly(0);
+    }
+
+    @Test
+    void changeOnBoundaryBelongsToLaterBucket() {
+        ColorDownsampler downsampler = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, ColorChange.Color.RED);
+        downsampler.accept(ColorChange.Color.BLUE, FROM_MILLIS + 2 * BUCKET);
+
+        ColorTimeline timeline = downsampler.finish(FROM, TO, TO_MILLIS);
+
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getColor).containsExactly(
+                ColorChange.Color.RED, ColorChange.Color.RED, ColorChange.Color.BLUE, ColorChange.Color.BLUE);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getTransitions).containsExactly(0, 0, 1, 0);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getChanges).containsExactly(0, 0, 1, 0);
+    }
+
+    @Test
+    void dominantColorIsTheLongestActiveOneAndRepeatsAreNotTransitions() {
+        ColorDownsampler downsampler = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, ColorChange.Color.RED);
+        downsampler.accept(ColorChange.Color.GREEN, FROM_MILLIS + 300);
+        downsampler.accept(ColorChange.Color.GREEN, FROM_MILLIS + 500);
+        downsampler.accept(ColorChange.Color.RED, FROM_MILLIS + 900);
+
+        ColorTimeline.Bucket first = downsampler.finish(FROM, TO, TO_MILLIS).getBuckets().get(0);
+
+        assertThat(first.getColor()).isEqualTo(ColorChange.Color.GREEN);
+        assertThat(first.getTransitions()).isEqualTo(2);
+        assertThat(first.getChanges()).isEqualTo(3);
+    }
+
+    @Test
+    void nullInitialColorLeavesBucketsEmptyUntilFirstChange() {
+        ColorDownsampler downsampler = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, null);
+        downsampler.accept(ColorChange.Color.GREEN, FROM_MILLIS + BUCKET + 800);
+
+        ColorTimeline timeline = downsampler.finish(FROM, TO, TO_MILLIS);
+
+        // Bucket 1 has only 200ms of green, but no other color accrued time there
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getColor).containsExactly(
+                null, ColorChange.Color.GREEN, ColorChange.Color.GREEN, ColorChange.Color.GREEN);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getTransitions).containsExactly(0, 1, 0, 0);
+    }
+
+    @Test
+    void nothingIsCreditedPastEndWhenToIsInTheFuture() {
+        ZonedDateTime futureTo = FROM.plusHours(1);
+        long now = FROM_MILLIS + BUCKET + 400;
+        ColorDownsampler downsampler = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, ColorChange.Color.RED);
+        downsampler.accept(ColorChange.Color.BLUE, FROM_MILLIS + BUCKET + 100);
+
+        ColorTimeline timeline = downsampler.finish(FROM, futureTo, now);
+
+        // Bucket 1 saw 100ms of red and 300ms of blue before now; later buckets have not happened yet
+        assertThat(timeline.getTo()).isEqualTo(futureTo);
+        assertThat(timeline.getBuckets()).extracting(ColorTimeline.Bucket::getColor).containsExactly(
+                ColorChange.Color.RED, ColorChange.Color.BLUE, null, null);
+    }
+
+    @Test
+    void endBeyondLastBucketIsClamped() {
+        ColorDownsampler downsampler = new ColorDownsampler(FROM_MILLIS, BUCKET, BUCKETS, ColorChange.Color.RED);
+        downsampler.accept(ColorChange.Color.BLUE, TO_MILLIS - 1);
+
+        ColorTimeline timeline = downsampler.finish(FROM, TO,
+                Instant.ofEpochMilli(TO_MILLIS).plusSeconds(3600).toEpochMilli());
+
+        // The single millisecond of blue must not be stretched past the range into the last bucket
+        assertThat(timeline.getBuckets()).hasSize(BUCKETS);
+        assertThat(timeline.getBuckets().get(BUCKETS - 1).getColor()).isEqualTo(ColorChange.Color.RED);
+        assertThat(timeline.getBuckets().get(BUCKETS - 1).getTransitions()).isEqualTo(1);
+    }
+}
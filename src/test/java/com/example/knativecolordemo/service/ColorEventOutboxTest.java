@@ -0,0 +1,152 @@
+package com.example.knativecolordemo.service;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ColorEventOutboxTest {
+
+    private static final JsonFormat FORMAT = new JsonFormat();
+
+    @TempDir
+    Path directory;
+
+    private final EventPublisherService publisher = mock(EventPublisherService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ColorEventOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        when(publisher.publishEvent(any())).thenReturn(CompletableFuture.completedFuture(null));
+        outbox = new ColorEventOutbox();
+        ReflectionTestUtils.setField(outbox, "eventPublisherService", publisher);
+        ReflectionTestUtils.setField(outbox, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(outbox, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(outbox, "batchSize", 50);
+        ReflectionTestUtils.setField(outbox, "initialBackoff", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(outbox, "maxBackoff", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(outbox, "compactThresholdBytes", 4L * 1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        outbox.stop();
+    }
+
+    @Test
+    void deadLettersUndecodableRecordWithItsOffsetAndDeliversTheRest() throws Exception {
+        byte[] first = frame(FORMAT.serialize(event("e-1")));
+        byte[] corrupt = frame("not a cloudevent".getBytes(StandardCharsets.UTF_8));
+        byte[] last = frame(FORMAT.serialize(event("e-2")));
+        Files.write(directory.resolve("outbox-0.log"), concat(first, corrupt, last));
+
+        outbox.start();
+
+        assertThat(delivered(2)).containsExactly("e-1", "e-2");
+        awaitDrained();
+        List<String> deadLetters = Files.readAllLines(directory.resolve("dead-letter.jsonl"));
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0)).contains("\"generation\":0", "\"offset\":" + first.length);
+        assertThat(meterRegistry.counter("outbox.dead.lettered").count()).isEqualTo(1);
+    }
+
+    @Test
+    void truncatesTornTailAndKeepsAppending() throws Exception {
+        byte[] first = frame(FORMAT.serialize(event("e-1")));
+        byte[] torn = frame(FORMAT.serialize(event("e-2")));
+        Files.write(directory.resolve("outbox-0.log"), concat(first, Arrays.copyOf(torn, torn.length / 2)));
+
+        outbox.start();
+        outbox.append(event("e-3"));
+
+        assertThat(delivered(2)).containsExactly("e-1", "e-3");
+        awaitDrained();
+    }
+
+    @Test
+    void retriesWithBackoffUntilTheDeadLetterFileIsWritable() throws Exception {
+        // A directory where the dead-letter file belongs makes every attempt to set the record aside fail
+        Path deadLetterFile = Files.createDirectory(directory.resolve("dead-letter.jsonl"));
+        byte[] corrupt = frame("not a cloudevent".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("outbox-0.log"), concat(corrupt, frame(FORMAT.serialize(event("e-1")))));
+
+        outbox.start();
+        Thread.sleep(200);
+        assertThat(outbox.getPendingBytes()).isEqualTo(Files.size(directory.resolve("outbox-0.log")));
+        verify(publisher, never()).publishEvent(any());
+
+        Files.delete(deadLetterFile);
+
+        assertThat(delivered(1)).containsExactly("e-1");
+        awaitDrained();
+        assertThat(Files.readAllLines(deadLetterFile)).hasSize(1);
+    }
+
+    private List<String> delivered(int count) {
+        ArgumentCaptor<CloudEvent> events = ArgumentCaptor.forClass(CloudEvent.class);
+        verify(publisher, timeout(5000).times(count)).publishEvent(events.capture());
+        return events.getAllValues().stream().map(CloudEvent::getId).toList();
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (outbox.getPendingBytes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(outbox.getPendingBytes()).isZero();
+    }
+
+    private static CloudEvent event(String id) {
+        return CloudEventBuilder.v1()
+                .withId(id)
+                .withType("com.example.color.change")
+                .withSource(URI.create("com.example.knativecolordemo"))
+                .withData("application/json", "{\"color\":\"BLUE\"}".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    // [int length][int crc32][payload], as the outbox writes records
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+}
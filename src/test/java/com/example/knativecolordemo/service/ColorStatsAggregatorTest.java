@@ -0,0 +1,107 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.ColorStats;
+import com.example.knativecolordemo.repository.ColorChangeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ColorStatsAggregatorTest {
+
+    private static final ZonedDateTime T0 = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final ColorChangeRepository repository = mock(ColorChangeRepository.class);
+    private ColorStatsAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new ColorStatsAggregator();
+        ReflectionTestUtils.setField(aggregator, "colorChangeRepository", repository);
+        ReflectionTestUtils.setField(aggregator, "maxSources", 2);
+    }
+
+    @Test
+    void countsChangesAndDwellPerColor() {
+        aggregator.record(change(ColorChange.Color.RED, 0, "a"));
+        aggregator.record(change(ColorChange.Color.BLUE, 10, "a"));
+        aggregator.record(change(ColorChange.Color.RED, 15, "a"));
+
+        ColorStats stats = aggregator.snapshot();
+
+        assertThat(stats.getTotalChanges()).isEqualTo(3);
+        assertThat(stats.getCurrentColor()).isEqualTo(ColorChange.Color.RED);
+        assertThat(stats.getCurrentSince()).isEqualTo(T0.plusSeconds(15));
+        assertThat(stats.getFirstChange()).isEqualTo(T0);
+        assertThat(stats.getColors().get(ColorChange.Color.RED).getChanges()).isEqualTo(2);
+        assertThat(stats.getColors().get(ColorChange.Color.BLUE).getChanges()).isEqualTo(1);
+        assertThat(stats.getColors().get(ColorChange.Color.BLUE).getDwellMillis()).isEqualTo(5_000);
+        // The current color keeps accruing until now
+        assertThat(stats.getColors().get(ColorChange.Color.RED).getDwellMillis()).isGreaterThan(10_000);
+        assertThat(stats.getColors().get(ColorChange.Color.GREEN).getChanges()).isZero();
+    }
+
+    @Test
+    void outOfOrderChangeIsCountedWithoutMovingTheCurrentColor() {
+        aggregator.record(change(ColorChange.Color.RED, 0, "a"));
+        aggregator.record(change(ColorChange.Color.BLUE, 10, "a"));
+        aggregator.record(change(ColorChange.Color.GREEN, 5, "a"));
+
+        ColorStats stats = aggregator.snapshot();
+
+        assertThat(stats.getTotalChanges()).isEqualTo(3);
+        assertThat(stats.getCurrentColor()).isEqualTo(ColorChange.Color.BLUE);
+        assertThat(stats.getColors().get(ColorChange.Color.GREEN).getChanges()).isEqualTo(1);
+        assertThat(stats.getColors().get(ColorChange.Color.GREEN).getDwellMillis()).isZero();
+        assertThat(stats.getColors().get(ColorChange.Color.RED).getDwellMillis()).isEqualTo(10_000);
+    }
+
+    @Test
+    void sourcesPastMaxSourcesFoldIntoOther() {
+        aggregator.record(change(ColorChange.Color.RED, 0, "a"));
+        aggregator.record(change(ColorChange.Color.RED, 1, "b"));
+        aggregator.record(change(ColorChange.Color.RED, 2, "c"));
+        aggregator.record(change(ColorChange.Color.RED, 3, "d"));
+        aggregator.record(change(ColorChange.Color.RED, 4, "a"));
+
+        assertThat(aggregator.snapshot().getSources()).containsEntry("a", 2L).containsEntry("b", 1L)
+                .containsEntry("other", 2L).hasSize(3);
+    }
+
+    @Test
+    void countsOnlyTheLastMinuteAsRecentRate() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        aggregator.record(new ColorChange(ColorChange.Color.RED, now.minusMinutes(5), "a"));
+        aggregator.record(new ColorChange(ColorChange.Color.BLUE, now.minusSeconds(5), "a"));
+        aggregator.record(new ColorChange(ColorChange.Color.RED, now, "a"));
+
+        assertThat(aggregator.snapshot().getChangesLastMinute()).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildReplacesEverythingWithTheTable() {
+        aggregator.record(change(ColorChange.Color.GREEN, 0, "stale"));
+        when(repository.findOldest(any())).thenReturn(List.of(
+                change(ColorChange.Color.RED, 0, "a"), change(ColorChange.Color.BLUE, 1, "a")));
+
+        aggregator.rebuild();
+
+        ColorStats stats = aggregator.snapshot();
+        assertThat(stats.getTotalChanges()).isEqualTo(2);
+        assertThat(stats.getColors().get(ColorChange.Color.GREEN).getChanges()).isZero();
+        assertThat(stats.getSources()).containsOnlyKeys("a");
+    }
+
+    private static ColorChange change(ColorChange.Color color, int second, String source) {
+        return new ColorChange(color, T0.plusSeconds(second), source);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.knativecolordemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateEventFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void secondDeliveryOfSameSourceAndIdIsDuplicate() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 100, Duration.ofMinutes(10));
+
+        assertThat(filter.isDuplicate("source-a", "1")).isFalse();
+        assertThat(filter.isDuplicate("source-a", "1")).isTrue();
+        // The same id from another source is a different event
+        assertThat(filter.isDuplicate("source-b", "1")).isFalse();
+        assertThat(meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "cache").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("cloudevents.dedup.checks").count()).isEqualTo(3);
+    }
+
+    @Test
+    void keyDoesNotCollideAcrossTheSeparator() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 100, Duration.ofMinutes(10));
+
+        assertThat(filter.isDuplicate("a", "b:c")).isFalse();
+        assertThat(filter.isDuplicate("a:b", "c")).isFalse();
+    }
+
+    @Test
+    void forgottenEventIsAcceptedAgain() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 100, Duration.ofMinutes(10));
+        filter.isDuplicate("source", "1");
+
+        filter.forget("source", "1");
+
+        assertThat(filter.isDuplicate("source", "1")).isFalse();
+    }
+
+    @Test
+    void evictsEldestBeyondMaxEntries() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 2, Duration.ofMinutes(10));
+        filter.isDuplicate("source", "1");
+        filter.isDuplicate("source", "2");
+        filter.isDuplicate("source", "3");
+
+        assertThat(meterRegistry.get("cloudevents.dedup.cache.size").gauge().value()).isEqualTo(3);
+        // The next check trims back to max-entries, oldest first
+        assertThat(filter.isDuplicate("source", "3")).isTrue();
+        assertThat(filter.isDuplicate("source", "1")).isFalse();
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 100, Duration.ofMillis(20));
+        filter.isDuplicate("source", "1");
+
+        Thread.sleep(50);
+
+        assertThat(filter.isDuplicate("source", "1")).isFalse();
+    }
+
+    @Test
+    void countsDatabaseDuplicatesSeparately() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(meterRegistry, 100, Duration.ofMinutes(10));
+
+        filter.recordDatabaseDuplicate();
+
+        assertThat(meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "database").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("cloudevents.dedup.duplicates", "layer", "cache").count()).isZero();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.ColorChange;
+import com.example.knativecolordemo.model.CursorPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    private static final ZonedDateTime T0 = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 123_000_000, ZoneOffset.ofHours(2));
+
+    @Test
+    void roundTripsTimestampAndIdInUtc() {
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.encode(T0, 42L));
+
+        assertThat(cursor.getTimestamp().toInstant()).isEqualTo(T0.toInstant());
+        assertThat(cursor.getTimestamp().getZone()).isEqualTo(ZoneOffset.UTC);
+        assertThat(cursor.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        assertThat(KeysetCursor.encode(T0, Long.MAX_VALUE)).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("bm8tc2VwYXJhdG9y")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fullDescendingPageHasNextCursorAtItsOldestRow() {
+        List<ColorChange> rows = List.of(change(3, 2), change(2, 1));
+
+        CursorPage<ColorChange> page = toPage(rows, 2, false, null);
+
+        assertThat(page.getItems()).extracting(ColorChange::getId).containsExactly(3L, 2L);
+        assertThat(KeysetCursor.decode(page.getNextCursor()).getId()).isEqualTo(2L);
+        assertThat(KeysetCursor.decode(page.getPrevCursor()).getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void shortDescendingPageIsTheLast() {
+        CursorPage<ColorChange> page = toPage(List.of(change(1, 0)), 2, false, null);
+
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void afterPageIsReturnedNewestFirst() {
+        List<ColorChange> ascending = List.of(change(4, 3), change(5, 4));
+
+        CursorPage<ColorChange> page = toPage(ascending, 10, true, "cursor");
+
+        assertThat(page.getItems()).extracting(ColorChange::getId).containsExactly(5L, 4L);
+        assertThat(KeysetCursor.decode(page.getNextCursor()).getId()).isEqualTo(4L);
+        assertThat(KeysetCursor.decode(page.getPrevCursor()).getId()).isEqualTo(5L);
+    }
+
+    @Test
+    void emptyAfterPageKeepsThePollPosition() {
+        CursorPage<ColorChange> page = toPage(List.of(), 10, true, "cursor");
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getPrevCursor()).isEqualTo("cursor");
+    }
+
+    private static CursorPage<ColorChange> toPage(List<ColorChange> rows, int limit, boolean ascending, String after) {
+        return KeysetCursor.toPage(rows, limit, ascending, after, ColorChange::getTimestamp, ColorChange::getId);
+    }
+
+    private static ColorChange change(long id, int second) {
+        ColorChange change = new ColorChange(ColorChange.Color.RED, T0.plusSeconds(second), "test");
+        change.setId(id);
+        return change;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentCloudEventStoreTest {
+
+    private static final ZonedDateTime T0 = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private SegmentCloudEventStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        store.close();
+    }
+
+    @Test
+    void rejectsOversizedRecordBeforeTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertThatThrownBy(() -> store.saveAll(List.of(record("e-1", 0), record("e-2", 1, "x".repeat(8192)))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+        assertThat(store.findNewest(10)).isEmpty();
+    }
+
+    @Test
+    void appendsOnlyOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        store.saveAll(List.of(record("rolled-back", 0)));
+        // Rolled back: the synchronization is dropped without afterCommit
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.saveAll(List.of(record("committed", 1)));
+        assertThat(store.findNewest(10)).isEmpty();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(store.findNewest(10)).extracting(CloudEventRecord::getEventId).containsExactly("committed");
+    }
+
+    @Test
+    void appendFailureAfterCommitIsNotThrownBackIntoTheTransaction() throws Exception {
+        store.saveAll(List.of(record("e-1", 0, "x".repeat(3000))));
+        TransactionSynchronizationManager.initSynchronization();
+        store.saveAll(List.of(record("e-2", 1, "x".repeat(3000))));
+        // e-2 needs the next segment, and a directory in its place makes opening it fail
+        Files.createDirectory(directory.resolve("segment-1.seg"));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(store.findNewest(10)).extracting(CloudEventRecord::getEventId).containsExactly("e-1");
+    }
+
+    @Test
+    void recoversRecordsAcrossSegmentsAfterReopen() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            store.saveAll(List.of(record("e-" + i, i, "y".repeat(200))));
+        }
+        store.close();
+
+        store = open();
+
+        List<CloudEventRecord> newest = store.findNewest(30);
+        assertThat(newest).hasSize(20);
+        assertThat(newest.get(0).getEventId()).isEqualTo("e-19");
+        assertThat(newest.get(0).getData()).isEqualTo("y".repeat(200));
+        assertThat(newest.get(19).getTimestamp().toInstant()).isEqualTo(T0.toInstant());
+        // Ids continue after the recovered ones
+        store.saveAll(List.of(record("e-20", 20)));
+        assertThat(store.findNewest(1).get(0).getId()).isGreaterThan(newest.get(0).getId());
+    }
+
+    private SegmentCloudEventStore open() throws Exception {
+        SegmentCloudEventStore opened = new SegmentCloudEventStore();
+        ReflectionTestUtils.setField(opened, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(opened, "segmentSize", 4096);
+        opened.open();
+        return opened;
+    }
+
+    private static CloudEventRecord record(String eventId, int second) {
+        return record(eventId, second, "{}");
+    }
+
+    private static CloudEventRecord record(String eventId, int second, String data) {
+        return new CloudEventRecord(eventId, "com.example.test", "test-source", T0.plusSeconds(second), data, null);
+    }
+}
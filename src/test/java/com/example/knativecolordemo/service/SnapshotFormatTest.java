@@ -0,0 +1,165 @@
+package com.example.knativecolordemo.service;
+
+import com.example.knativecolordemo.model.CloudEventRecord;
+import com.example.knativecolordemo.model.ColorChange;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotFormatTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_789, ZoneOffset.ofHours(2));
+
+    @Test
+    void roundTripsBothSectionsInOrder() throws IOException {
+        CloudEventRecord event = new CloudEventRecord("e-1", "com.example.color.change", "src",
+                T0.plusSeconds(5).toZonedDateTime(), "{\"color\":\"RED\",\"note\":\"ünïcode\"}", null);
+        event.setId(42L);
+
+        byte[] snapshot = write(writer -> {
+            writer.beginColorChanges();
+            writer.writeColorChange(1, ColorChange.Color.RED, T0, "manual");
+            writer.writeColorChange(2, ColorChange.Color.BLUE, T0.plusSeconds(1), null);
+            writer.beginCloudEvents();
+            writer.writeCloudEvent(event);
+        });
+
+        List<ColorChange> colorChanges = new ArrayList<>();
+        List<CloudEventRecord> cloudEvents = new ArrayList<>();
+        SnapshotFormat.read(new ByteArrayInputStream(snapshot), colorChanges::add, cloudEvents::add);
+
+        assertThat(colorChanges).extracting(ColorChange::getId).containsExactly(1L, 2L);
+        assertThat(colorChanges).extracting(ColorChange::getColor).containsExactly(ColorChange.Color.RED, ColorChange.Color.BLUE);
+        assertThat(colorChanges).extracting(ColorChange::getSource).containsExactly("manual", null);
+        assertThat(colorChanges.get(0).getTimestamp().toOffsetDateTime()).isEqualTo(T0);
+
+        assertThat(cloudEvents).hasSize(1);
+        CloudEventRecord read = cloudEvents.get(0);
+        assertThat(read.getId()).isEqualTo(42L);
+        assertThat(read.getEventId()).isEqualTo("e-1");
+        assertThat(read.getEventType()).isEqualTo("com.example.color.change");
+        assertThat(read.getSource()).isEqualTo("src");
+        assertThat(read.getTimestamp().toOffsetDateTime()).isEqualTo(T0.plusSeconds(5));
+        assertThat(read.getData()).isEqualTo(event.getData());
+        assertThat(read.getSubject()).isNull();
+    }
+
+    @Test
+    void readsEmptySnapshot() throws IOException {
+        byte[] snapshot = write(writer -> {
+            writer.beginColorChanges();
+            writer.beginCloudEvents();
+        });
+
+        List<Object> records = new ArrayList<>();
+        SnapshotFormat.read(new ByteArrayInputStream(snapshot), records::add, records::add);
+
+        assertThat(records).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws IOException {
+        byte[] snapshot = write(writer -> {
+            writer.beginColorChanges();
+            for (int i = 0; i < 1000; i++) {
+                writer.writeColorChange(i, ColorChange.Color.GREEN, T0.plusSeconds(i), "src-" + i);
+            }
+        });
+        byte[] truncated = Arrays.copyOf(snapshot, snapshot.length / 2);
+
+        assertThatThrownBy(() -> SnapshotFormat.read(new ByteArrayInputStream(truncated), c -> { }, e -> { }))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsSnapshotTruncatedInsideAString() throws IOException {
+        // Cut inside the uncompressed data, not just the gzip trailer, so the string's bytes run out
+        byte[] raw = gunzip(write(writer -> {
+            writer.beginColorChanges();
+            writer.writeColorChange(1, ColorChange.Color.RED, T0, "a fairly long source name");
+        }));
+        byte[] truncated = gzip(Arrays.copyOf(raw, raw.length - 10));
+
+        assertThatThrownBy(() -> SnapshotFormat.read(new ByteArrayInputStream(truncated), c -> { }, e -> { }))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void rejectsNegativeStringLength() throws IOException {
+        byte[] snapshot = withSourceLength(-2);
+
+        assertThatThrownBy(() -> SnapshotFormat.read(new ByteArrayInputStream(snapshot), c -> { }, e -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("string length -2");
+    }
+
+    @Test
+    void rejectsOversizedStringLengthWithoutAllocatingIt() throws IOException {
+        byte[] snapshot = withSourceLength(Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> SnapshotFormat.read(new ByteArrayInputStream(snapshot), c -> { }, e -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("string length " + Integer.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsForeignStream() {
+        byte[] notGzip = "not a snapshot".getBytes();
+
+        assertThatThrownBy(() -> SnapshotFormat.read(new ByteArrayInputStream(notGzip), c -> { }, e -> { }))
+                .isInstanceOf(IOException.class);
+    }
+
+    // A one-record snapshot whose source length prefix is replaced by length
+    private static byte[] withSourceLength(int length) throws IOException {
+        String source = "marker";
+        byte[] raw = gunzip(write(writer -> {
+            writer.beginColorChanges();
+            writer.writeColorChange(1, ColorChange.Color.RED, T0, source);
+        }));
+        // The source is the last field of the record: [int length][bytes], then the section and file END bytes
+        int prefix = raw.length - 2 - source.length() - 4;
+        ByteBuffer.wrap(raw).putInt(prefix, length);
+        return gzip(raw);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] write(Body body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotFormat.Writer writer = new SnapshotFormat.Writer(out);
+        body.write(writer);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private interface Body {
+        void write(SnapshotFormat.Writer writer) throws IOException;
+    }
+}
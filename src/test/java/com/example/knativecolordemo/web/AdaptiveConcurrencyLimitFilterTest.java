@@ -0,0 +1,160 @@
+package com.example.knativecolordemo.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitFilterTest {
+
+    private static final Duration THRESHOLD = Duration.ofMillis(250);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void growsByAboutOnePerRoundTripWhileTheLimitIsInUse() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(4, 1, 10, 0.5);
+        MockHttpServletRequest first = startAsync(filter);
+        MockHttpServletRequest second = startAsync(filter);
+
+        // Three in flight against a limit of 4: each fast delivery adds 1/limit
+        for (int i = 0; i < 4; i++) {
+            deliver(filter, 10, HttpServletResponse.SC_ACCEPTED);
+        }
+
+        assertThat(filter.getLimit()).isEqualTo(4);
+        deliver(filter, 10, HttpServletResponse.SC_ACCEPTED);
+        assertThat(filter.getLimit()).isEqualTo(5);
+        first.getAsyncContext().complete();
+        second.getAsyncContext().complete();
+    }
+
+    @Test
+    void doesNotGrowUnderLightTraffic() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(4, 1, 10, 0.5);
+
+        for (int i = 0; i < 20; i++) {
+            deliver(filter, 10, HttpServletResponse.SC_ACCEPTED);
+        }
+
+        assertThat(filter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void cutsOnSlowDeliveryOrSinkOverload() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(16, 1, 20, 0.5);
+
+        deliver(filter, THRESHOLD.toMillis() + 1, HttpServletResponse.SC_ACCEPTED);
+        assertThat(filter.getLimit()).isEqualTo(8);
+
+        deliver(filter, 10, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        assertThat(filter.getLimit()).isEqualTo(4);
+
+        deliver(filter, 10, 429);
+        assertThat(filter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void cutsOnlyOncePerRoundTrip() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(16, 1, 20, 0.5);
+        clock.addAndGet(1);
+        MockHttpServletRequest first = startAsync(filter);
+        MockHttpServletRequest second = startAsync(filter);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        // Both started before the first cut, so the second slow completion does not cut again
+        first.getAsyncContext().complete();
+        second.getAsyncContext().complete();
+
+        assertThat(filter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void holdsTheSlotUntilTheAsyncResponseCompletes() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, 1, 1, 0.5);
+
+        MockHttpServletRequest pending = startAsync(filter);
+        assertThat(inFlight()).isEqualTo(1);
+        assertThat(deliver(filter, 0, HttpServletResponse.SC_ACCEPTED).getStatus()).isEqualTo(429);
+
+        pending.getAsyncContext().complete();
+
+        assertThat(inFlight()).isZero();
+        assertThat(deliver(filter, 0, HttpServletResponse.SC_ACCEPTED).getStatus())
+                .isEqualTo(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    @Test
+    void rejectsOverTheLimitWithRetryAfterWithoutCallingTheSink() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, 1, 1, 0.5);
+        MockHttpServletRequest pending = startAsync(filter);
+        AtomicInteger calls = new AtomicInteger();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(sinkRequest(), response, (request, ignored) -> calls.incrementAndGet());
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(calls).hasValue(0);
+        assertThat(meterRegistry.counter("cloudevents.limiter.rejected").count()).isEqualTo(1);
+        pending.getAsyncContext().complete();
+    }
+
+    @Test
+    void leavesOtherRequestsAlone() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, 1, 1, 0.5);
+        MockHttpServletRequest pending = startAsync(filter);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/colors/current"), response,
+                (request, ignored) -> ((HttpServletResponse) ignored).setStatus(200));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        pending.getAsyncContext().complete();
+    }
+
+    private AdaptiveConcurrencyLimitFilter filter(int initial, int min, int max, double backoffRatio) {
+        return new AdaptiveConcurrencyLimitFilter(meterRegistry, true, initial, min, max, THRESHOLD, backoffRatio,
+                clock::get);
+    }
+
+    // A delivery that takes millis on the fake clock and answers status
+    private MockHttpServletResponse deliver(AdaptiveConcurrencyLimitFilter filter, long millis, int status)
+            throws Exception {
+        // Start after the previous delivery ended, so a cut it caused does not cover this one
+        clock.addAndGet(1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain sink = (request, ignored) -> {
+            clock.addAndGet(Duration.ofMillis(millis).toNanos());
+            response.setStatus(status);
+        };
+        filter.doFilter(sinkRequest(), response, sink);
+        return response;
+    }
+
+    // A delivery whose ack is deferred until its async context completes
+    private MockHttpServletRequest startAsync(AdaptiveConcurrencyLimitFilter filter) throws Exception {
+        MockHttpServletRequest request = sinkRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (started, ignored) -> started.startAsync());
+        return request;
+    }
+
+    private static MockHttpServletRequest sinkRequest() {
+        return new MockHttpServletRequest("POST", "/cloudevents");
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("cloudevents.limiter.in-flight").gauge().value();
+    }
+}
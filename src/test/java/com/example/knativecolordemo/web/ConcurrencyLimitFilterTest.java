@@ -0,0 +1,71 @@
+package com.example.knativecolordemo.web;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void leavesSinkDeliveriesToTheAdaptiveLimit() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ZERO, true);
+
+        assertThat(statusWhileSlotTaken(filter, "POST", "/cloudevents")).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+        assertThat(statusWhileSlotTaken(filter, "GET", "/api/colors/current"))
+                .isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void limitsSinkDeliveriesWhenTheAdaptiveLimitIsOff() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ZERO, false);
+
+        assertThat(statusWhileSlotTaken(filter, "POST", "/cloudevents"))
+                .isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void neverLimitsHealthChecks() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ZERO, true);
+
+        assertThat(statusWhileSlotTaken(filter, "GET", "/actuator/health")).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    @Test
+    void rejectsWithRetryAfterOnceTheSlotsAreTaken() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ZERO, true);
+        AtomicReference<MockHttpServletResponse> rejected = new AtomicReference<>();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/colors/current"), new MockHttpServletResponse(),
+                (request, response) -> rejected.set(send(filter, "GET", "/api/colors/history")));
+
+        assertThat(rejected.get().getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(rejected.get().getHeader("Retry-After")).isEqualTo("1");
+        // The slot is back once the first request finished
+        assertThat(send(filter, "GET", "/api/colors/history").getStatus()).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    // Sends a request while another one holds the only slot
+    private static int statusWhileSlotTaken(ConcurrencyLimitFilter filter, String method, String path) throws Exception {
+        AtomicReference<MockHttpServletResponse> result = new AtomicReference<>();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/colors/current"), new MockHttpServletResponse(),
+                (request, response) -> result.set(send(filter, method, path)));
+        return result.get().getStatus();
+    }
+
+    private static MockHttpServletResponse send(ConcurrencyLimitFilter filter, String method, String path) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(new MockHttpServletRequest(method, path), response,
+                    (request, ignored) -> response.setStatus(HttpServletResponse.SC_ACCEPTED));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+}